@@ -22,7 +22,11 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import io.arlas.commons.config.ArlasConfiguration;
 import io.arlas.commons.exceptions.ArlasConfigurationException;
 import io.arlas.commons.rest.utils.ServerConstants;
+import io.arlas.persistence.server.utils.Durability;
+import io.arlas.persistence.server.utils.FileSystemLayout;
 import io.dropwizard.db.DataSourceFactory;
+import io.dropwizard.util.DataSize;
+import io.dropwizard.util.Duration;
 import jakarta.validation.Valid;
 
 import java.util.Arrays;
@@ -39,13 +43,65 @@ public class ArlasPersistenceServerConfiguration extends ArlasConfiguration {
     @JsonProperty("firestore_collection")
     public String firestoreCollection;
 
+    @JsonProperty("async_response_threads")
+    public int asyncResponseThreads = 16;
+
+    @JsonProperty("async_response_queue_size")
+    public int asyncResponseQueueSize = 1024;
+
     @JsonProperty("local_folder")
     public String localFolder;
 
+    @JsonProperty("local_folder_layout")
+    public String localFolderLayout = "flat";
+
+    @JsonProperty("local_folder_migrate")
+    public boolean localFolderMigrate = false;
+
+    @JsonProperty("local_folder_durability")
+    public String localFolderDurability = "batch";
+
+    @JsonProperty("local_folder_watch")
+    public boolean localFolderWatch = false;
+
+    @JsonProperty("local_folder_reconcile_interval")
+    public Duration localFolderReconcileInterval = Duration.minutes(1);
+
+    @JsonProperty("local_folder_catalog")
+    public boolean localFolderCatalog = true;
+
+    @JsonProperty("local_folder_read_threads")
+    public int localFolderReadThreads = 32;
+
+    @JsonProperty("file_log_segment_size")
+    public DataSize fileLogSegmentSize = DataSize.mebibytes(64);
+
+    @JsonProperty("file_log_compaction_ratio")
+    public double fileLogCompactionRatio = 0.5;
+
+    @JsonProperty("file_log_compaction_interval")
+    public Duration fileLogCompactionInterval = Duration.minutes(1);
+
+    @JsonProperty("hibernate_acl_arrays")
+    public boolean hibernateAclArrays = false;
+
+    @JsonProperty("hibernate_value_jsonb")
+    public boolean hibernateValueJsonb = false;
+
+    @JsonProperty("hibernate_key_indexes")
+    public boolean hibernateKeyIndexes = false;
+
     @Valid
     @JsonProperty("database")
     public DataSourceFactory database = new DataSourceFactory();
 
+    @Valid
+    @JsonProperty("database_replica")
+    public DataSourceFactory databaseReplica = null;
+
+    @JsonProperty("database_replica_read_your_writes")
+    public Duration databaseReplicaReadYourWrites = Duration.seconds(5);
+
     public void check() throws ArlasConfigurationException {
         super.check();
 
@@ -62,10 +118,45 @@ public class ArlasPersistenceServerConfiguration extends ArlasConfiguration {
                 throw new ArlasConfigurationException("User header or Groups header or Organization Header is missing from Arlas Allowed Headers.");
             }
         }
+        if (asyncResponseThreads <= 0 || asyncResponseQueueSize <= 0) {
+            throw new ArlasConfigurationException("Configurations 'async_response_threads' and 'async_response_queue_size' must be positive");
+        }
         if ("firestore".equals(engine)) {
             if (firestoreCollection == null || firestoreCollection.isEmpty()) {
                 throw new ArlasConfigurationException("Configuration 'firestore_collection' is required when using engine 'firestore'");
             }
         }
+        if ("file".equals(engine) || "file-log".equals(engine)) {
+            try {
+                Durability.fromString(localFolderDurability);
+            } catch (IllegalArgumentException e) {
+                throw new ArlasConfigurationException("Configuration 'local_folder_durability' must be 'sync', 'batch' or 'none' but received: " + localFolderDurability);
+            }
+        }
+        if ("file".equals(engine)) {
+            try {
+                FileSystemLayout layout = FileSystemLayout.fromString(localFolderLayout);
+                if (localFolderMigrate && layout == FileSystemLayout.FLAT) {
+                    throw new ArlasConfigurationException("Configuration 'local_folder_migrate' requires 'local_folder_layout' to be 'sharded' or 'mixed'");
+                }
+            } catch (IllegalArgumentException e) {
+                throw new ArlasConfigurationException("Configuration 'local_folder_layout' must be 'flat', 'sharded' or 'mixed' but received: " + localFolderLayout);
+            }
+            if (localFolderReadThreads <= 0) {
+                throw new ArlasConfigurationException("Configuration 'local_folder_read_threads' must be positive but received: " + localFolderReadThreads);
+            }
+        }
+        if ("file-log".equals(engine)) {
+            if (localFolder == null || localFolder.isEmpty()) {
+                throw new ArlasConfigurationException("Configuration 'local_folder' is required when using engine 'file-log'");
+            }
+            if (fileLogCompactionRatio <= 0 || fileLogCompactionRatio > 1) {
+                throw new ArlasConfigurationException("Configuration 'file_log_compaction_ratio' must be in ]0, 1] but received: " + fileLogCompactionRatio);
+            }
+            // segments are read through int offsets of their memory mapping
+            if (fileLogSegmentSize.toBytes() <= 0 || fileLogSegmentSize.toBytes() > Integer.MAX_VALUE) {
+                throw new ArlasConfigurationException("Configuration 'file_log_segment_size' must be in ]0, 2GiB[ but received: " + fileLogSegmentSize);
+            }
+        }
     }
 }
@@ -34,10 +34,17 @@ public class Documentation {
     public static final String DELETE_OPERATION = "Delete an entry given its key and id.";
     public static final String CREATE_OPERATION = "Store a new piece of data for the provided zone and key (auto generate id).";
     public static final String UPDATE_OPERATION = "Update an existing value.";
+    public static final String CREATE_ALL_OPERATION = "Store new pieces of data for the provided zone in one request (auto generate ids).";
+    public static final String UPDATE_ALL_OPERATION = "Update existing values in one request. Nothing is updated if one of them is in conflict (hibernate engine).";
+    public static final String DOCUMENTS = "Documents to write: key, readers, writers and value, plus id and last_update (previous date value of last modification known by client) for the updates.";
     public static final String READERS =  "Comma separated values of groups authorized to read the data.";
     public static final String WRITERS =  "Comma separated values of groups authorized to modify the data.";
     public static final String LAST_UPDATE = "Previous date value of last modification known by client.";
     public static final String FORM_PRETTY = "Pretty print";
     public static final String SEARCH_KEY = "Filter by key value";
+    public static final String KEY_MATCH = "How the key filter matches the keys, ignoring case: CONTAINS or PREFIX (faster on large zones).";
+    public static final String TOTAL = "How the total is computed: EXACT, ESTIMATE (cheaper, approximate on large zones) or NONE (no total).";
+    public static final String WITH_VALUE = "Include the values of the documents. When false, only their metadata is returned (faster on large values).";
+    public static final String CURSOR = "Position returned in the 'next' link of the previous page ('*' for the first page). When set, the page parameter is ignored.";
 
 }
@@ -0,0 +1,154 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.arlas.persistence.server.core;
+
+import io.arlas.filter.core.IdentityParam;
+import io.arlas.persistence.server.model.DataMetadata;
+import io.arlas.persistence.server.utils.Cursor;
+import io.arlas.persistence.server.utils.KeyMatch;
+import io.arlas.persistence.server.utils.SortOrder;
+import io.arlas.persistence.server.utils.TotalMode;
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * In-memory index of the documents of a local engine: id -> entry and (zone, organisation) -> entries sorted by last update date.
+ * Entries are replaced, never modified, when a document is updated.
+ */
+public class MetadataIndex<E extends DataMetadata> {
+    private static final Comparator<DataMetadata> BY_LAST_UPDATE_DATE = Comparator
+            .comparing(DataMetadata::getLastUpdateDate)
+            .thenComparing(DataMetadata::getId);
+
+    private final Map<String, E> entries = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, NavigableSet<E>>> zones = new ConcurrentHashMap<>();
+
+    public E get(String id) {
+        return entries.get(id);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public Collection<E> entries() {
+        return Collections.unmodifiableCollection(entries.values());
+    }
+
+    public synchronized E put(E entry) {
+        E previous = entries.put(entry.getId(), entry);
+        if (previous != null) {
+            unlink(previous);
+        }
+        zones.computeIfAbsent(entry.getDocZone(), zone -> new ConcurrentHashMap<>())
+                .computeIfAbsent(entry.getDocOrganization(), org -> new ConcurrentSkipListSet<>(BY_LAST_UPDATE_DATE))
+                .add(entry);
+        return previous;
+    }
+
+    public synchronized E remove(String id) {
+        E previous = entries.remove(id);
+        if (previous != null) {
+            unlink(previous);
+        }
+        return previous;
+    }
+
+    /**
+     * Same visibility rules as the former directory scan: documents of the user's organisations they can read or write
+     * (all organisations if one of them is blank), plus public documents of the other organisations for authenticated users.
+     */
+    public Pair<Long, List<E>> list(String zone, IdentityParam identityParam, Integer size, Integer page, SortOrder order, String key, KeyMatch keyMatch, TotalMode total) {
+        int limit = (int) Math.min((long) page * size, Integer.MAX_VALUE);
+        Pair<Long, List<E>> top = select(zone, identityParam, limit, null, order, key, keyMatch, total);
+        int from = (page - 1) * size;
+        return Pair.of(top.getLeft(), from > top.getRight().size() ? Collections.emptyList() : top.getRight().subList(from, top.getRight().size()));
+    }
+
+    /**
+     * Same as {@link #list} but returns the page following the cursor. The total still counts all the matching documents.
+     * Counting is cheap in memory: an estimated total is an exact one, and no total only stops the scan earlier.
+     */
+    public Pair<Long, List<E>> listAfter(String zone, IdentityParam identityParam, Integer size, Cursor cursor, SortOrder order, String key, KeyMatch keyMatch, TotalMode total) {
+        DataMetadata after = null;
+        if (!cursor.isStart()) {
+            after = new DataMetadata();
+            after.setLastUpdateDate(cursor.getLastUpdateDate());
+            after.setId(cursor.getId());
+        }
+        return select(zone, identityParam, size, after, order, key, keyMatch, total);
+    }
+
+    private Pair<Long, List<E>> select(String zone, IdentityParam identityParam, int limit, DataMetadata after, SortOrder order, String key, KeyMatch keyMatch, TotalMode total) {
+        boolean allOrganisations = identityParam.organisation.stream().anyMatch(String::isBlank);
+        String searchKey = key == null ? null : key.toLowerCase();
+        Comparator<DataMetadata> comparator = order == SortOrder.ASC ? BY_LAST_UPDATE_DATE : BY_LAST_UPDATE_DATE.reversed();
+        // the first 'limit' matches in the requested order, the worst one on top; the other matches are only counted
+        PriorityQueue<E> best = new PriorityQueue<>(Math.min(limit, 1024) + 1, comparator.reversed());
+        long count = 0;
+        for (Map.Entry<String, NavigableSet<E>> organisation : zones.getOrDefault(zone, Collections.emptyMap()).entrySet()) {
+            boolean ownOrganisation = allOrganisations || identityParam.organisation.contains(organisation.getKey());
+            if (!ownOrganisation && identityParam.isAnonymous) {
+                continue;
+            }
+            // entries of an organisation come in the requested order: once one misses the page, the next ones do too
+            boolean candidates = true;
+            for (E entry : order == SortOrder.ASC ? organisation.getValue() : organisation.getValue().descendingSet()) {
+                if (searchKey != null && !(keyMatch == KeyMatch.PREFIX
+                        ? entry.getDocKey().toLowerCase().startsWith(searchKey)
+                        : entry.getDocKey().toLowerCase().contains(searchKey))) {
+                    continue;
+                }
+                if (ownOrganisation
+                        ? PersistenceService.isReaderOnData(identityParam, entry) || PersistenceService.isWriterOnData(identityParam, entry)
+                        : PersistenceService.isPublic(entry)) {
+                    count++;
+                    if (candidates && (after == null || comparator.compare(entry, after) > 0)) {
+                        if (best.size() < limit) {
+                            best.add(entry);
+                        } else if (comparator.compare(entry, best.peek()) < 0) {
+                            best.poll();
+                            best.add(entry);
+                        } else if (total == TotalMode.NONE) {
+                            break;
+                        } else {
+                            candidates = false;
+                        }
+                    }
+                }
+            }
+        }
+        List<E> top = new ArrayList<>(best);
+        top.sort(comparator);
+        return Pair.of(total == TotalMode.NONE ? null : count, top);
+    }
+
+    private void unlink(E entry) {
+        Map<String, NavigableSet<E>> organisations = zones.get(entry.getDocZone());
+        if (organisations != null) {
+            NavigableSet<E> sorted = organisations.get(entry.getDocOrganization());
+            if (sorted != null) {
+                sorted.remove(entry);
+            }
+        }
+    }
+}
@@ -22,6 +22,8 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 
 import org.apache.commons.lang3.tuple.Pair;
 
@@ -29,17 +31,44 @@ import io.arlas.commons.exceptions.ArlasException;
 import static io.arlas.filter.config.TechnicalRoles.GROUP_PUBLIC;
 import io.arlas.filter.core.IdentityParam;
 import io.arlas.persistence.server.exceptions.ForbiddenException;
+import io.arlas.persistence.server.exceptions.NotImplementedException;
 import io.arlas.persistence.server.model.Data;
+import io.arlas.persistence.server.model.DataMetadata;
+import io.arlas.persistence.server.model.DataWrite;
+import io.arlas.persistence.server.utils.Cursor;
+import io.arlas.persistence.server.utils.KeyMatch;
 import io.arlas.persistence.server.utils.SortOrder;
+import io.arlas.persistence.server.utils.TotalMode;
 
 public interface PersistenceService {
 
-
+    /**
+     * Page of the documents of a zone visible by the user, with the total given by the total mode (null for NONE).
+     * Without value, only the metadata of the documents is fetched and returned.
+     */
     Pair<Long, List<Data>> list(String zone,
                                 IdentityParam identityParam,
                                 Integer size,
                                 Integer page,
-                                SortOrder order, String key) throws ArlasException;
+                                SortOrder order, String key,
+                                KeyMatch keyMatch,
+                                TotalMode total,
+                                boolean withValue) throws ArlasException;
+
+    /**
+     * Same as {@link #list} but seeking the page right after the given cursor instead of skipping the previous pages.
+     * The next page starts after the last returned document.
+     */
+    default Pair<Long, List<Data>> listAfter(String zone,
+                                             IdentityParam identityParam,
+                                             Integer size,
+                                             Cursor cursor,
+                                             SortOrder order, String key,
+                                             KeyMatch keyMatch,
+                                             TotalMode total,
+                                             boolean withValue) throws ArlasException {
+        throw new NotImplementedException("Cursor pagination is not supported by this persistence engine.");
+    }
 
     Data getById(String id,
                  IdentityParam identityParam) throws ArlasException;
@@ -62,6 +91,100 @@ public interface PersistenceService {
     Data deleteById(String id,
                     IdentityParam identityParam) throws ArlasException;
 
+    /**
+     * Creates the documents in the zone, in one transaction when the engine has them. The default implementation
+     * creates them one by one.
+     */
+    default List<Data> createAll(String zone,
+                                 IdentityParam identityParam,
+                                 List<DataWrite> documents) throws ArlasException {
+        List<Data> created = new ArrayList<>();
+        for (DataWrite document : documents) {
+            created.add(create(zone, document.getKey(), identityParam, document.readersSet(), document.writersSet(),
+                    document.getValue()));
+        }
+        return created;
+    }
+
+    /**
+     * Updates the documents, in one transaction when the engine has them: nothing is written if one of them is in
+     * conflict. The default implementation updates them one by one.
+     */
+    default List<Data> updateAll(IdentityParam identityParam,
+                                 List<DataWrite> documents) throws ArlasException {
+        List<Data> updated = new ArrayList<>();
+        for (DataWrite document : documents) {
+            updated.add(update(document.getId(), document.getKey(), identityParam, document.readersSet(),
+                    document.writersSet(), document.getValue(), document.lastUpdateDate()));
+        }
+        return updated;
+    }
+
+    /*
+     * Asynchronous variants of the methods above, for the engines whose client is non-blocking: the request thread is
+     * released while they wait. The default implementations run the blocking method and return a completed future,
+     * so the engines bound to the request thread, like the Hibernate session of the unit of work, keep it.
+     */
+
+    default CompletableFuture<Pair<Long, List<Data>>> listAsync(String zone,
+                                                                IdentityParam identityParam,
+                                                                Integer size,
+                                                                Integer page,
+                                                                SortOrder order, String key,
+                                                                KeyMatch keyMatch,
+                                                                TotalMode total,
+                                                                boolean withValue) {
+        return completed(() -> list(zone, identityParam, size, page, order, key, keyMatch, total, withValue));
+    }
+
+    default CompletableFuture<Pair<Long, List<Data>>> listAfterAsync(String zone,
+                                                                     IdentityParam identityParam,
+                                                                     Integer size,
+                                                                     Cursor cursor,
+                                                                     SortOrder order, String key,
+                                                                     KeyMatch keyMatch,
+                                                                     TotalMode total,
+                                                                     boolean withValue) {
+        return completed(() -> listAfter(zone, identityParam, size, cursor, order, key, keyMatch, total, withValue));
+    }
+
+    default CompletableFuture<Data> getByIdAsync(String id,
+                                                 IdentityParam identityParam) {
+        return completed(() -> getById(id, identityParam));
+    }
+
+    default CompletableFuture<Data> createAsync(String zone,
+                                                String key,
+                                                IdentityParam identityParam,
+                                                Set<String> readers,
+                                                Set<String> writers,
+                                                String value) {
+        return completed(() -> create(zone, key, identityParam, readers, writers, value));
+    }
+
+    default CompletableFuture<Data> updateAsync(String id,
+                                                String key,
+                                                IdentityParam identityParam,
+                                                Set<String> readers,
+                                                Set<String> writers,
+                                                String value,
+                                                Date lastUpdate) {
+        return completed(() -> update(id, key, identityParam, readers, writers, value, lastUpdate));
+    }
+
+    default CompletableFuture<Data> deleteByIdAsync(String id,
+                                                    IdentityParam identityParam) {
+        return completed(() -> deleteById(id, identityParam));
+    }
+
+    private static <T> CompletableFuture<T> completed(Callable<T> call) {
+        try {
+            return CompletableFuture.completedFuture(call.call());
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
     static List<String> getGroupsForZone(String zone,
                                          IdentityParam identityParam) {
         return identityParam.groups.stream()
@@ -94,10 +217,32 @@ public interface PersistenceService {
         isShareableGroup(readersList, zone, identityParam);
     }
 
+    /**
+     * Makes sure an updated document gets a last update date later than its previous version, this date being the
+     * version checked by the optimistic concurrency of the updates.
+     */
+    static void ensureNewVersion(Data data, DataMetadata previous) {
+        if (data.getLastUpdateDate().getTime() <= previous.getLastUpdateDate().getTime()) {
+            data.setLastUpdateDate(new Date(previous.getLastUpdateDate().getTime() + 1));
+        }
+    }
+
     static boolean isPublic(Data data) {
+        return isPublic(new DataMetadata(data));
+    }
+
+    static boolean isPublic(DataMetadata data) {
         return data.getDocReaders().contains(GROUP_PUBLIC) || data.getDocWriters().contains(GROUP_PUBLIC);
     }
 
+    static boolean isReaderOnData(IdentityParam idp, Data data) {
+        return isReaderOnData(idp, new DataMetadata(data));
+    }
+
+    static boolean isWriterOnData(IdentityParam idp, Data data) {
+        return isWriterOnData(idp, new DataMetadata(data));
+    }
+
     /**
      * A user can read data if:
      * - data is public
@@ -118,7 +263,7 @@ public interface PersistenceService {
      *      User is owner of the doc 
      *   ).
      */
-    static boolean isReaderOnData(IdentityParam idp, Data data) {
+    static boolean isReaderOnData(IdentityParam idp, DataMetadata data) {
         return isPublic(data) || 
                 (
                     !idp.isAnonymous &&
@@ -148,7 +293,7 @@ public interface PersistenceService {
      *      User is owner of the doc 
      *   ).
      */
-    static boolean isWriterOnData(IdentityParam idp, Data data) {
+    static boolean isWriterOnData(IdentityParam idp, DataMetadata data) {
         return  !idp.isAnonymous &&
                 idp.organisation.contains(data.getDocOrganization()) && /** Always true in case of a KeyCloak Policy enforcer, as idp and doc organisations are both empty strings "". */
                 (data.getDocOwner().equals(idp.userId) 
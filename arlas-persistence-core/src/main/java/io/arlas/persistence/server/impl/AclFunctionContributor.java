@@ -0,0 +1,42 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.persistence.server.impl;
+
+import org.hibernate.boot.model.FunctionContributions;
+import org.hibernate.boot.model.FunctionContributor;
+import org.hibernate.type.StandardBasicTypes;
+
+/**
+ * Gives HQL the PostgreSQL array overlap operator, the only form of the test able to use the GIN index of
+ * user_data.docEntities: acl_overlap(ud.docEntities, :entities) with the entities bound as a String[].
+ * acl_any(reader, :groups) tests a value against groups bound the same way, with one parameter whatever their number.
+ */
+public class AclFunctionContributor implements FunctionContributor {
+    public static final String ACL_OVERLAP = "acl_overlap";
+    public static final String ACL_ANY = "acl_any";
+
+    @Override
+    public void contributeFunctions(FunctionContributions functionContributions) {
+        functionContributions.getFunctionRegistry().registerPattern(ACL_OVERLAP, "(?1 && cast(?2 as text[]))",
+                functionContributions.getTypeConfiguration().getBasicTypeRegistry().resolve(StandardBasicTypes.BOOLEAN));
+        functionContributions.getFunctionRegistry().registerPattern(ACL_ANY, "(?1 = any(cast(?2 as text[])))",
+                functionContributions.getTypeConfiguration().getBasicTypeRegistry().resolve(StandardBasicTypes.BOOLEAN));
+    }
+}
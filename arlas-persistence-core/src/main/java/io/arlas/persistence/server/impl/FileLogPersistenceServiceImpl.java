@@ -0,0 +1,550 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.persistence.server.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.arlas.commons.exceptions.ArlasException;
+import io.arlas.commons.exceptions.NotFoundException;
+import io.arlas.filter.core.IdentityParam;
+import io.arlas.persistence.server.core.MetadataIndex;
+import io.arlas.persistence.server.core.PersistenceService;
+import io.arlas.persistence.server.exceptions.ConflictException;
+import io.arlas.persistence.server.exceptions.ForbiddenException;
+import io.arlas.persistence.server.model.Data;
+import io.arlas.persistence.server.model.DataMetadata;
+import io.arlas.persistence.server.model.LogEntry;
+import io.arlas.persistence.server.utils.Cursor;
+import io.arlas.persistence.server.utils.Durability;
+import io.arlas.persistence.server.utils.KeyMatch;
+import io.arlas.persistence.server.utils.SortOrder;
+import io.arlas.persistence.server.utils.TotalMode;
+import io.arlas.persistence.server.utils.UUIDHelper;
+import io.dropwizard.lifecycle.Managed;
+import org.apache.commons.lang3.tuple.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Single node engine appending documents to segment files of the local folder.
+ * The metadata of the documents and the position of their last version are kept in memory and rebuilt from the
+ * segments at startup, a torn or corrupted tail being truncated. Segments whose content is mostly obsolete are
+ * compacted in background by copying their live records at the end of the log.
+ * A write is only published to the index once its record has been synced as the durability requires, so readers never
+ * see a write a crash could lose. Until then, it is pending: the following writers of the document already see it.
+ */
+public class FileLogPersistenceServiceImpl implements PersistenceService, Managed {
+    protected static Logger LOGGER = LoggerFactory.getLogger(FileLogPersistenceServiceImpl.class);
+
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int READ_ATTEMPTS = 3;
+    private final static ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Path folder;
+    private final long segmentSize;
+    private final double compactionRatio;
+    private final Durability durability;
+    private final MetadataIndex<LogEntry> index = new MetadataIndex<>();
+    private final NavigableMap<Long, LogSegment> segments = new ConcurrentSkipListMap<>();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    // last write of the documents whose record is not synced yet, guarded by the write lock
+    private final Map<String, Pending> pending = new HashMap<>();
+    private final ScheduledExecutorService compactor;
+    private final FileChannel lockChannel;
+    private volatile LogSegment active;
+
+    /**
+     * A write waiting for the sync of its record: the new version of the document, or null for a deletion.
+     * The entry is moved by compactions like the published ones, under the write lock.
+     */
+    private static class Pending {
+        final String id;
+        LogEntry entry;
+
+        Pending(String id, LogEntry entry) {
+            this.id = id;
+            this.entry = entry;
+        }
+    }
+
+    public FileLogPersistenceServiceImpl(String localFolder, Durability durability, long segmentSize, double compactionRatio, long compactionIntervalMillis) throws ArlasException {
+        if (segmentSize <= 0 || segmentSize > LogSegment.MAX_SIZE) {
+            throw new ArlasException("The segment size must be in ]0, " + LogSegment.MAX_SIZE + "] but received: " + segmentSize);
+        }
+        this.folder = Paths.get(localFolder);
+        this.durability = durability;
+        this.segmentSize = segmentSize;
+        this.compactionRatio = compactionRatio;
+        try {
+            Files.createDirectories(folder);
+            lockChannel = FileChannel.open(folder.resolve(".lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock lock = lockChannel.tryLock();
+            if (lock == null) {
+                throw new ArlasException("Folder " + folder + " is used by another process");
+            }
+            recover();
+        } catch (IOException e) {
+            throw new ArlasException("Could not open the file log " + folder + ": " + e.getMessage());
+        }
+        compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "file-log-compaction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (compactionIntervalMillis > 0) {
+            compactor.scheduleWithFixedDelay(this::compact, compactionIntervalMillis, compactionIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public Pair<Long, List<Data>> list(String zone, IdentityParam identityParam, Integer size, Integer page, SortOrder order, String key, KeyMatch keyMatch, TotalMode total, boolean withValue) throws ArlasException {
+        return readPage(index.list(zone, identityParam, size, page, order, key, keyMatch, total), withValue);
+    }
+
+    @Override
+    public Pair<Long, List<Data>> listAfter(String zone, IdentityParam identityParam, Integer size, Cursor cursor, SortOrder order, String key, KeyMatch keyMatch, TotalMode total, boolean withValue) throws ArlasException {
+        return readPage(index.listAfter(zone, identityParam, size, cursor, order, key, keyMatch, total), withValue);
+    }
+
+    private Pair<Long, List<Data>> readPage(Pair<Long, List<LogEntry>> entries, boolean withValue) throws ArlasException {
+        if (!withValue) {
+            return Pair.of(entries.getLeft(), entries.getRight().stream().map(entry -> entry.toData(null)).toList());
+        }
+        List<Data> list = new ArrayList<>();
+        for (LogEntry entry : entries.getRight()) {
+            Data data = read(entry);
+            if (data != null) {
+                list.add(data);
+            }
+        }
+        return Pair.of(entries.getLeft(), list);
+    }
+
+    @Override
+    public Data getById(String id, IdentityParam identityParam) throws ArlasException {
+        LogEntry entry = getEntry(id);
+        if (PersistenceService.isReaderOnData(identityParam, entry) ||
+                PersistenceService.isWriterOnData(identityParam, entry)) {
+            return Optional.ofNullable(read(entry))
+                    .orElseThrow(() -> new NotFoundException("Data with id " + id + " not found."));
+        } else {
+            throw new ForbiddenException("You are not authorized to view this resource");
+        }
+    }
+
+    @Override
+    public Data create(String zone, String key, IdentityParam identityParam, Set<String> readers, Set<String> writers, String value) throws ArlasException {
+        if (identityParam.organisation.size() != 1) {
+            throw new ArlasException("A unique organisation must be set in IdParam but received: " + identityParam.organisation);
+        }
+        PersistenceService.checkReadersWritersGroups(zone, identityParam, readers, writers);
+        Data newData = new Data(UUIDHelper.generateUUID().toString(),
+                key,
+                zone,
+                value,
+                identityParam.userId,
+                identityParam.organisation.get(0),
+                new ArrayList<>(writers),
+                new ArrayList<>(readers),
+                new Date());
+        LogEntry entry;
+        Pending write;
+        writeLock.lock();
+        try {
+            entry = put(newData);
+            write = pend(newData.getId(), entry);
+        } finally {
+            writeLock.unlock();
+        }
+        syncAndPublish(write, entry.getSegment(), entry.getOffset() + entry.getLength());
+        return newData;
+    }
+
+    @Override
+    public Data update(String id, String key, IdentityParam identityParam, Set<String> readers, Set<String> writers, String value, Date lastUpdate) throws ArlasException {
+        Data data;
+        LogEntry entry;
+        Pending write;
+        writeLock.lock();
+        try {
+            LogEntry current = getLastWrite(id);
+            if (!PersistenceService.isWriterOnData(identityParam, current)) {
+                throw new ForbiddenException("You are not authorized to update this resource");
+            }
+            PersistenceService.checkReadersWritersGroups(current.getDocZone(), identityParam, readers, writers);
+            if (current.getLastUpdateDate().getTime() != lastUpdate.getTime()) {
+                throw new ConflictException("The data can not be updated due to conflicts.");
+            }
+            data = current.toData(value);
+            data.setDocKey(Optional.ofNullable(key).orElse(current.getDocKey()));
+            data.setDocReaders(new ArrayList<>(Optional.ofNullable(readers).orElse(new HashSet<>(current.getDocReaders()))));
+            data.setDocWriters(new ArrayList<>(Optional.ofNullable(writers).orElse(new HashSet<>(current.getDocWriters()))));
+            data.setDocValue(value, true);
+            PersistenceService.ensureNewVersion(data, current);
+            entry = put(data);
+            write = pend(id, entry);
+        } finally {
+            writeLock.unlock();
+        }
+        syncAndPublish(write, entry.getSegment(), entry.getOffset() + entry.getLength());
+        return data;
+    }
+
+    @Override
+    public Data deleteById(String id, IdentityParam identityParam) throws ArlasException {
+        Data data;
+        LogSegment segment;
+        long end;
+        Pending write;
+        writeLock.lock();
+        try {
+            LogEntry current = getLastWrite(id);
+            if (!PersistenceService.isWriterOnData(identityParam, current)) {
+                throw new ForbiddenException("You are not authorized to delete this resource");
+            }
+            data = read(current);
+            ByteBuffer body = ByteBuffer.wrap(concat(DELETE, id.getBytes(StandardCharsets.UTF_8)));
+            segment = active(body.remaining());
+            end = segment.append(LogSegment.record(body)) + LogSegment.HEADER_LENGTH + body.capacity();
+            segment.tombstoneBytes.addAndGet(LogSegment.HEADER_LENGTH + body.capacity());
+            write = pend(id, null);
+        } catch (IOException e) {
+            throw new ArlasException("An error occur in writing the file log: " + e.getMessage());
+        } finally {
+            writeLock.unlock();
+        }
+        syncAndPublish(write, segment.id, end);
+        return data;
+    }
+
+    @Override
+    public void stop() throws Exception {
+        compactor.shutdown();
+        compactor.awaitTermination(1, TimeUnit.MINUTES);
+        writeLock.lock();
+        try {
+            for (LogSegment segment : segments.values()) {
+                segment.sync(segment.size());
+                segment.close();
+            }
+            lockChannel.close();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private LogEntry getEntry(String id) throws NotFoundException {
+        return Optional.ofNullable(index.get(id))
+                .orElseThrow(() -> new NotFoundException("Data with id " + id + " not found."));
+    }
+
+    /**
+     * Returns the last version of a document written, published or not. Must be called with the write lock.
+     */
+    private LogEntry getLastWrite(String id) throws NotFoundException {
+        Pending write = pending.get(id);
+        if (write == null) {
+            return getEntry(id);
+        }
+        return Optional.ofNullable(write.entry)
+                .orElseThrow(() -> new NotFoundException("Data with id " + id + " not found."));
+    }
+
+    /**
+     * Records a write whose record has been appended. Must be called with the write lock.
+     */
+    private Pending pend(String id, LogEntry entry) {
+        Pending write = new Pending(id, entry);
+        pending.put(id, write);
+        return write;
+    }
+
+    /**
+     * Syncs the record of a pending write then publishes it to the index, unless a later write of the same document
+     * is pending, which will publish itself. A write whose sync failed is dropped.
+     */
+    private void syncAndPublish(Pending write, long segmentId, long position) throws ArlasException {
+        boolean synced = false;
+        try {
+            sync(segmentId, position);
+            synced = true;
+        } finally {
+            writeLock.lock();
+            try {
+                if (pending.get(write.id) == write) {
+                    pending.remove(write.id);
+                    if (!synced) {
+                        release(write.entry);
+                    } else if (write.entry != null) {
+                        release(index.put(write.entry));
+                    } else {
+                        release(index.remove(write.id));
+                    }
+                } else {
+                    // superseded by a later write, its bytes are no longer live
+                    release(write.entry);
+                }
+            } finally {
+                writeLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Reads the value of an entry, following the document if its record has been moved by a compaction.
+     * Returns null if the document has been deleted meanwhile.
+     */
+    private Data read(LogEntry entry) throws ArlasException {
+        for (int attempt = 0; attempt < READ_ATTEMPTS && entry != null; attempt++) {
+            LogSegment segment = segments.get(entry.getSegment());
+            if (segment != null) {
+                try {
+                    ByteBuffer body = segment.read(entry.getOffset(), entry.getLength());
+                    int metadataLength = body.getInt(1);
+                    byte[] value = new byte[body.limit() - 5 - metadataLength];
+                    body.get(5 + metadataLength, value);
+                    return entry.toData(new String(value, StandardCharsets.UTF_8));
+                } catch (ClosedChannelException e) {
+                    // the segment has just been compacted
+                } catch (IOException e) {
+                    throw new ArlasException("An error occur in reading the file log: " + e.getMessage());
+                }
+            }
+            entry = index.get(entry.getId());
+        }
+        if (entry == null) {
+            return null;
+        }
+        throw new ArlasException("Could not read document " + entry.getId() + " from the file log");
+    }
+
+    /**
+     * Appends a new version of a document, without publishing it. Must be called with the write lock.
+     */
+    private LogEntry put(Data data) throws ArlasException {
+        DataMetadata metadata = new DataMetadata(data);
+        try {
+            byte[] metadataBytes = objectMapper.writeValueAsBytes(metadata);
+            byte[] valueBytes = data.getDocValue().getBytes(StandardCharsets.UTF_8);
+            ByteBuffer body = ByteBuffer.allocate(5 + metadataBytes.length + valueBytes.length)
+                    .put(PUT).putInt(metadataBytes.length).put(metadataBytes).put(valueBytes)
+                    .flip();
+            LogSegment segment = active(body.remaining());
+            long offset = segment.append(LogSegment.record(body));
+            LogEntry entry = new LogEntry(metadata, segment.id, offset, LogSegment.HEADER_LENGTH + body.capacity());
+            segment.liveBytes.addAndGet(entry.getLength());
+            return entry;
+        } catch (IOException e) {
+            throw new ArlasException("An error occur in writing the file log: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the segment to append a record to, starting a new one when the current one is full.
+     * Must be called with the write lock.
+     */
+    private LogSegment active(int bodyLength) throws IOException {
+        if (active.size() > 0 && active.size() + LogSegment.HEADER_LENGTH + bodyLength > segmentSize) {
+            active.sync(active.size());
+            LogSegment segment = new LogSegment(active.id + 1, segmentPath(active.id + 1));
+            segments.put(segment.id, segment);
+            active = segment;
+        }
+        return active;
+    }
+
+    /**
+     * Forces the log up to the end of a record. All the records of the log being in the same file, writers always
+     * share the fsync, whether the durability is 'sync' or 'batch'.
+     */
+    private void sync(long segmentId, long position) throws ArlasException {
+        if (durability == Durability.NONE) {
+            return;
+        }
+        LogSegment segment = segments.get(segmentId);
+        if (segment != null) {
+            try {
+                segment.sync(position);
+            } catch (ClosedChannelException e) {
+                // the segment has been compacted, its records have been synced at the end of the log
+            } catch (IOException e) {
+                throw new ArlasException("An error occur in syncing the file log: " + e.getMessage());
+            }
+        }
+    }
+
+    private void release(LogEntry previous) {
+        if (previous != null) {
+            LogSegment segment = segments.get(previous.getSegment());
+            if (segment != null) {
+                segment.liveBytes.addAndGet(-previous.getLength());
+            }
+        }
+    }
+
+    private void recover() throws IOException {
+        List<Long> ids;
+        try (Stream<Path> paths = Files.list(folder)) {
+            ids = paths.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+        for (long id : ids) {
+            LogSegment segment = new LogSegment(id, segmentPath(id));
+            segments.put(id, segment);
+            long valid = segment.scan((offset, length, body) -> {
+                if (body.get(0) == PUT) {
+                    release(index.put(new LogEntry(readMetadata(body), id, offset, length)));
+                    segment.liveBytes.addAndGet(length);
+                } else {
+                    release(index.remove(readId(body)));
+                    segment.tombstoneBytes.addAndGet(length);
+                }
+            });
+            if (valid < segment.size()) {
+                LOGGER.warn("Truncating " + (segment.size() - valid) + " bytes of incomplete or corrupted records at the end of " + segment.path);
+                segment.truncate(valid);
+            }
+        }
+        if (segments.isEmpty()) {
+            segments.put(1L, new LogSegment(1L, segmentPath(1L)));
+        }
+        active = segments.lastEntry().getValue();
+        LOGGER.info("Recovered " + index.size() + " documents from " + segments.size() + " segments of " + folder);
+    }
+
+    private void compact() {
+        try {
+            for (LogSegment segment : List.copyOf(segments.values())) {
+                if (segment != active && isWorthCompacting(segment)) {
+                    compact(segment);
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.error("Could not compact the file log " + folder, e);
+        }
+    }
+
+    private boolean isWorthCompacting(LogSegment segment) {
+        // deletion records are only dropped when compacting the oldest segment
+        long kept = segment.liveBytes.get() + (segment.id == segments.firstKey() ? 0 : segment.tombstoneBytes.get());
+        return segment.size() == 0 || 1 - (double) kept / segment.size() >= compactionRatio;
+    }
+
+    private void compact(LogSegment segment) throws IOException {
+        boolean oldest = segment.id == segments.firstKey();
+        segment.scan((offset, length, body) -> {
+            writeLock.lock();
+            try {
+                if (body.get(0) == PUT) {
+                    String id = readMetadata(body).getId();
+                    Pending write = pending.get(id);
+                    LogEntry current = index.get(id);
+                    if (write != null && isAt(write.entry, segment, offset)) {
+                        write.entry = move(write.entry, segment, body, length);
+                    } else if (isAt(current, segment, offset)) {
+                        index.put(move(current, segment, body, length));
+                    }
+                } else if (!oldest && (index.get(readId(body)) == null || isPendingDeletion(readId(body)))) {
+                    // an older segment may still hold the deleted document
+                    LogSegment target = active(body.remaining());
+                    target.append(LogSegment.record(body));
+                    target.tombstoneBytes.addAndGet(length);
+                }
+            } finally {
+                writeLock.unlock();
+            }
+        });
+        writeLock.lock();
+        try {
+            active.sync(active.size());
+            segments.remove(segment.id);
+        } finally {
+            writeLock.unlock();
+        }
+        segment.delete();
+        LOGGER.debug("Compacted " + segment.path);
+    }
+
+    private static boolean isAt(LogEntry entry, LogSegment segment, long offset) {
+        return entry != null && entry.getSegment() == segment.id && entry.getOffset() == offset;
+    }
+
+    private boolean isPendingDeletion(String id) {
+        Pending write = pending.get(id);
+        return write != null && write.entry == null;
+    }
+
+    /**
+     * Copies the record of an entry at the end of the log. Must be called with the write lock.
+     */
+    private LogEntry move(LogEntry entry, LogSegment segment, ByteBuffer body, int length) throws IOException {
+        LogSegment target = active(body.remaining());
+        long moved = target.append(LogSegment.record(body));
+        target.liveBytes.addAndGet(length);
+        segment.liveBytes.addAndGet(-length);
+        return new LogEntry(entry, target.id, moved, length);
+    }
+
+    private DataMetadata readMetadata(ByteBuffer body) throws IOException {
+        byte[] metadata = new byte[body.getInt(1)];
+        body.get(5, metadata);
+        return objectMapper.readValue(metadata, DataMetadata.class);
+    }
+
+    private String readId(ByteBuffer body) {
+        byte[] id = new byte[body.limit() - 1];
+        body.get(1, id);
+        return new String(id, StandardCharsets.UTF_8);
+    }
+
+    private Path segmentPath(long id) {
+        return folder.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+    }
+
+    private static byte[] concat(byte type, byte[] content) {
+        byte[] bytes = new byte[content.length + 1];
+        bytes[0] = type;
+        System.arraycopy(content, 0, bytes, 1, content.length);
+        return bytes;
+    }
+}
@@ -0,0 +1,346 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.persistence.server.impl;
+
+import io.arlas.persistence.server.model.DataMetadata;
+import io.arlas.persistence.server.model.FileEntry;
+import io.arlas.persistence.server.utils.AtomicFileWriter;
+import org.apache.commons.lang3.tuple.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Binary catalog of the metadata of the documents of a local folder, so that the file engine can start without
+ * reading every document. It holds a snapshot of the entries and of the modification times of the directories,
+ * followed by the changes appended since, and is checkpointed in the background once the changes outnumber the entries
+ * of the snapshot, so that the changes never take longer to replay than the snapshot to read. At startup, the documents of the directories whose modification time
+ * differs from the snapshot are checked again; a missing or unreadable catalog triggers a full scan.
+ * The catalog is a cache: it is not forced to disk and a crash only costs the rescan of the changed directories.
+ * Documents edited in place, without a move, do not change the time of their directory: delete the catalog after such edits.
+ */
+class FileSystemCatalog implements Closeable {
+    protected static Logger LOGGER = LoggerFactory.getLogger(FileSystemCatalog.class);
+    // in a directory of its own so that rewriting it does not change the modification time of the root
+    static final String DIRECTORY = ".catalog";
+    private static final String NAME = "catalog";
+    private static final int MAGIC = 0x41524c43;
+    private static final int VERSION = 1;
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    // directories modified this recently may be modified again without their time changing
+    private static final long UNSTABLE_MILLIS = 2000;
+    // small catalogs are not rewritten for every few changes
+    private static final int MIN_CHECKPOINT_CHANGES = 10000;
+
+    private final Path root;
+    private final Path path;
+    private final AtomicFileWriter writer;
+    private final Supplier<Collection<FileEntry>> entries;
+    private final ExecutorService checkpoints;
+    // a single checkpoint at a time, the changes being appended while it writes its snapshot
+    private final Object checkpointLock = new Object();
+    private DataOutputStream appender;
+    // changes made while a checkpoint writes its snapshot, appended to it once written
+    private List<Change> pending;
+    private int snapshotSize;
+    private int changes;
+    private boolean checkpointScheduled;
+    private boolean closed;
+
+    /**
+     * @param entries the current entries, copied by the checkpoints
+     */
+    FileSystemCatalog(Path root, AtomicFileWriter writer, Supplier<Collection<FileEntry>> entries) {
+        this.root = root;
+        this.path = root.resolve(DIRECTORY).resolve(NAME);
+        this.writer = writer;
+        this.entries = entries;
+        this.checkpoints = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "file-system-catalog");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Reads the catalog: the modification times of the directories when the snapshot was taken and the entries
+     * by id, changes included. Returns null if there is no usable catalog.
+     */
+    Pair<Map<Path, Long>, Map<String, FileEntry>> load() {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                LOGGER.warn("Ignoring catalog " + path + " of an unknown version");
+                return null;
+            }
+            Map<Path, Long> directories = new HashMap<>();
+            int directoryCount = input.readInt();
+            for (int i = 0; i < directoryCount; i++) {
+                directories.put(root.resolve(input.readUTF()), input.readLong());
+            }
+            Map<String, FileEntry> entries = new HashMap<>();
+            int entryCount = input.readInt();
+            for (int i = 0; i < entryCount; i++) {
+                FileEntry entry = readEntry(input);
+                entries.put(entry.getId(), entry);
+            }
+            int changeCount = 0;
+            try {
+                while (true) {
+                    byte operation = input.readByte();
+                    if (operation == PUT) {
+                        FileEntry entry = readEntry(input);
+                        entries.put(entry.getId(), entry);
+                    } else if (operation == REMOVE) {
+                        entries.remove(input.readUTF());
+                    } else {
+                        break;
+                    }
+                    changeCount++;
+                }
+            } catch (EOFException e) {
+                // end of the changes, the last one may be incomplete
+            }
+            synchronized (this) {
+                snapshotSize = entryCount;
+                changes = changeCount;
+            }
+            return Pair.of(directories, entries);
+        } catch (IOException e) {
+            LOGGER.warn("Ignoring unreadable catalog " + path + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Replaces the catalog by a snapshot of the current entries and of the current modification times of the
+     * directories. The changes made while the snapshot is written are kept in memory and appended to it.
+     */
+    void checkpoint() throws IOException {
+        synchronized (checkpointLock) {
+            List<FileEntry> snapshot;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closeAppender();
+                pending = new ArrayList<>();
+                snapshot = List.copyOf(entries.get());
+            }
+            boolean written = false;
+            try {
+                writeSnapshot(snapshot);
+                written = true;
+            } finally {
+                synchronized (this) {
+                    List<Change> missed = pending;
+                    pending = null;
+                    checkpointScheduled = false;
+                    // on failure, the changes go on being appended to the previous catalog
+                    openAppender();
+                    missed.forEach(this::append);
+                    if (written) {
+                        snapshotSize = snapshot.size();
+                        changes = missed.size();
+                    }
+                }
+            }
+        }
+    }
+
+    private void writeSnapshot(List<FileEntry> snapshot) throws IOException {
+        Files.createDirectories(path.getParent());
+        long stable = System.currentTimeMillis() - UNSTABLE_MILLIS;
+        List<Pair<Path, Long>> directories = new ArrayList<>();
+        try (Stream<Path> paths = Files.walk(root, 2)) {
+            for (Path directory : paths.filter(directory -> isDocumentDirectory(root, directory)).toList()) {
+                long lastModified = Files.getLastModifiedTime(directory).toMillis();
+                if (lastModified < stable) {
+                    directories.add(Pair.of(directory, lastModified));
+                }
+            }
+        }
+        writer.write(path, stream -> {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16));
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(directories.size());
+            for (Pair<Path, Long> directory : directories) {
+                output.writeUTF(root.relativize(directory.getLeft()).toString());
+                output.writeLong(directory.getRight());
+            }
+            output.writeInt(snapshot.size());
+            for (FileEntry entry : snapshot) {
+                writeEntry(output, entry);
+            }
+            output.flush();
+        });
+    }
+
+    /**
+     * Tells whether a directory of the folder may hold documents, as opposed to the hidden directories of the engine.
+     */
+    static boolean isDocumentDirectory(Path root, Path directory) {
+        return Files.isDirectory(directory) && (directory.equals(root) || !directory.getFileName().toString().startsWith("."));
+    }
+
+    /**
+     * Starts appending the changes to the catalog as it is.
+     */
+    synchronized void open() throws IOException {
+        openAppender();
+    }
+
+    synchronized void put(FileEntry entry) {
+        append(output -> {
+            output.writeByte(PUT);
+            writeEntry(output, entry);
+        });
+    }
+
+    synchronized void remove(String id) {
+        append(output -> {
+            output.writeByte(REMOVE);
+            output.writeUTF(id);
+        });
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        checkpoints.shutdown();
+        closeAppender();
+    }
+
+    private interface Change {
+        void write(DataOutputStream output) throws IOException;
+    }
+
+    private void append(Change change) {
+        if (pending != null) {
+            pending.add(change);
+            return;
+        }
+        if (appender == null) {
+            return;
+        }
+        try {
+            change.write(appender);
+            appender.flush();
+        } catch (IOException e) {
+            // the next startup must not trust a catalog missing a change
+            LOGGER.warn("Could not update catalog " + path + ", it is dropped: " + e.getMessage());
+            try {
+                closeAppender();
+                Files.deleteIfExists(path);
+            } catch (IOException ignored) {
+            }
+            return;
+        }
+        if (++changes >= Math.max(MIN_CHECKPOINT_CHANGES, snapshotSize) && !checkpointScheduled && !closed) {
+            checkpointScheduled = true;
+            checkpoints.execute(() -> {
+                try {
+                    checkpoint();
+                } catch (IOException e) {
+                    LOGGER.warn("Could not checkpoint catalog " + path + ": " + e.getMessage());
+                }
+            });
+        }
+    }
+
+    private void openAppender() throws IOException {
+        appender = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND)));
+    }
+
+    private void closeAppender() throws IOException {
+        if (appender != null) {
+            appender.close();
+            appender = null;
+        }
+    }
+
+    private void writeEntry(DataOutputStream output, FileEntry entry) throws IOException {
+        output.writeUTF(root.relativize(entry.getPath()).toString());
+        output.writeLong(entry.getLastModified());
+        output.writeUTF(entry.getId());
+        writeNullable(output, entry.getDocKey());
+        writeNullable(output, entry.getDocZone());
+        output.writeLong(entry.getLastUpdateDate().getTime());
+        writeNullable(output, entry.getDocOwner());
+        writeNullable(output, entry.getDocOrganization());
+        writeList(output, entry.getDocWriters());
+        writeList(output, entry.getDocReaders());
+    }
+
+    private FileEntry readEntry(DataInputStream input) throws IOException {
+        Path file = root.resolve(input.readUTF());
+        long lastModified = input.readLong();
+        DataMetadata metadata = new DataMetadata();
+        metadata.setId(input.readUTF());
+        metadata.setDocKey(readNullable(input));
+        metadata.setDocZone(readNullable(input));
+        metadata.setLastUpdateDate(new Date(input.readLong()));
+        metadata.setDocOwner(readNullable(input));
+        metadata.setDocOrganization(readNullable(input));
+        metadata.setDocWriters(readList(input));
+        metadata.setDocReaders(readList(input));
+        return new FileEntry(metadata, file, lastModified);
+    }
+
+    private static void writeNullable(DataOutputStream output, String value) throws IOException {
+        output.writeBoolean(value != null);
+        if (value != null) {
+            output.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream input) throws IOException {
+        return input.readBoolean() ? input.readUTF() : null;
+    }
+
+    private static void writeList(DataOutputStream output, List<String> values) throws IOException {
+        List<String> list = Optional.ofNullable(values).orElse(List.of());
+        output.writeInt(list.size());
+        for (String value : list) {
+            output.writeUTF(value);
+        }
+    }
+
+    private static List<String> readList(DataInputStream input) throws IOException {
+        int size = input.readInt();
+        List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(input.readUTF());
+        }
+        return values;
+    }
+}
@@ -19,77 +19,149 @@
 
 package io.arlas.persistence.server.impl;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import io.arlas.commons.exceptions.ArlasException;
 import io.arlas.commons.exceptions.NotFoundException;
 import io.arlas.filter.core.IdentityParam;
+import io.arlas.persistence.server.core.MetadataIndex;
 import io.arlas.persistence.server.core.PersistenceService;
 import io.arlas.persistence.server.exceptions.ConflictException;
 import io.arlas.persistence.server.exceptions.ForbiddenException;
 import io.arlas.persistence.server.model.Data;
-import io.arlas.persistence.server.model.FileWrapper;
+import io.arlas.persistence.server.model.FileEntry;
+import io.arlas.persistence.server.utils.AtomicFileWriter;
+import io.arlas.persistence.server.utils.Cursor;
+import io.arlas.persistence.server.utils.DataFileCodec;
+import io.arlas.persistence.server.utils.Durability;
+import io.arlas.persistence.server.utils.FileSystemLayout;
+import io.arlas.persistence.server.utils.KeyMatch;
 import io.arlas.persistence.server.utils.SortOrder;
+import io.arlas.persistence.server.utils.TotalMode;
 import io.arlas.persistence.server.utils.UUIDHelper;
+import io.dropwizard.lifecycle.Managed;
 import org.apache.commons.lang3.tuple.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
-import java.util.function.Predicate;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
-public class FileSystemPersistenceServiceImpl implements PersistenceService {
-    private final String storageFolder;
-    private final static ObjectMapper objectMapper = new ObjectMapper();
+public class FileSystemPersistenceServiceImpl implements PersistenceService, Managed, FileSystemWatcher.Listener {
+    protected static Logger LOGGER = LoggerFactory.getLogger(FileSystemPersistenceServiceImpl.class);
+    private static final int LOCK_STRIPES = 256;
+    // reads mostly wait for the disk, the pool is larger than the number of cores
+    public static final int DEFAULT_READ_THREADS = 4 * Runtime.getRuntime().availableProcessors();
+    private static final int INDEXING_BATCH_SIZE = 256;
+    // pages up to this size are read by the request thread, handing them to the readers would cost more than it saves
+    private static final int INLINE_READ_PAGE_SIZE = 8;
 
+    private final Path storageFolder;
+    private final FileSystemLayout layout;
+    private final AtomicFileWriter writer;
+    private final MetadataIndex<FileEntry> index = new MetadataIndex<>();
+    // updates and deletes of a document are serialized, those of documents of different stripes run in parallel
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+    private final FileSystemCatalog catalog;
+    // decodes the documents of the larger pages, and of the folder at startup, in parallel
+    private final ExecutorService readers;
+    private FileSystemWatcher watcher;
 
-    public FileSystemPersistenceServiceImpl(String localFolder) {
-        storageFolder = localFolder.endsWith("/") ? localFolder : localFolder + "/";
+    public FileSystemPersistenceServiceImpl(String localFolder, FileSystemLayout layout, boolean migrate, Durability durability) throws ArlasException {
+        this(localFolder, layout, migrate, durability, false, 0, false, DEFAULT_READ_THREADS);
+    }
+
+    /**
+     * @param watch follow the changes made to the folder by other processes, such as other servers sharing it
+     * @param reconcileIntervalMillis when watching, delay between two full comparisons of the folder with the index
+     * @param useCatalog keep a catalog of the metadata in the folder to start without reading every document,
+     *                   ignored when watching as the catalog can only be maintained by a single process
+     * @param readThreads number of threads reading the documents of the pages and of the folder at startup
+     */
+    public FileSystemPersistenceServiceImpl(String localFolder, FileSystemLayout layout, boolean migrate, Durability durability,
+                                            boolean watch, long reconcileIntervalMillis, boolean useCatalog, int readThreads) throws ArlasException {
+        this.storageFolder = Paths.get(localFolder);
+        this.layout = layout;
+        this.writer = new AtomicFileWriter(durability);
+        this.catalog = useCatalog && !watch ? new FileSystemCatalog(storageFolder, writer, index::entries) : null;
+        Arrays.setAll(locks, i -> new ReentrantLock());
+        this.readers = Executors.newFixedThreadPool(readThreads, runnable -> {
+            Thread thread = new Thread(runnable, "file-system-reader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            Files.createDirectories(storageFolder);
+            if (migrate) {
+                FileSystemLayout.migrate(storageFolder);
+            }
+        } catch (IOException e) {
+            throw new ArlasException("Could not prepare folder " + storageFolder + ": " + e.getMessage());
+        }
+        buildIndex();
+        if (watch) {
+            try {
+                watcher = new FileSystemWatcher(storageFolder, this, reconcileIntervalMillis);
+            } catch (IOException e) {
+                throw new ArlasException("Could not watch folder " + storageFolder + ": " + e.getMessage());
+            }
+        }
     }
 
     @Override
-    public Pair<Long, List<Data>> list(String zone, IdentityParam identityParam, Integer size, Integer page, SortOrder order, String key) throws ArlasException {
-        List<FileWrapper> fileWrappers = new ArrayList<>();
-        for (String org : identityParam.organisation) {
-            fileWrappers.addAll(getByFilenameFilter(prefixFilter(zone, org), identityParam, true, key));
-        }
-        if (!identityParam.isAnonymous) {
-            // add public from other orgs
-            List<FileWrapper> pub = getByFilenameFilter(prefixFilter(zone, ""), null,false, key);
-            fileWrappers.addAll(pub.stream()
-                    .filter(f -> PersistenceService.isPublic(f.data))
-                    .filter(f -> !identityParam.organisation.contains(f.data.getDocOrganization()))
-                    .toList());
-        }
-        Stream<Data> rawlist = fileWrappers.stream().map(fw -> fw.data);
-        List<Data> list;
-        if (order.equals(SortOrder.DESC)) {
-            list = rawlist.sorted(Comparator.comparing(Data::getLastUpdateDate).reversed())
-                    .collect(Collectors.toList());
+    public Pair<Long, List<Data>> list(String zone, IdentityParam identityParam, Integer size, Integer page, SortOrder order, String key, KeyMatch keyMatch, TotalMode total, boolean withValue) throws ArlasException {
+        return readPage(index.list(zone, identityParam, size, page, order, key, keyMatch, total), withValue);
+    }
+
+    @Override
+    public Pair<Long, List<Data>> listAfter(String zone, IdentityParam identityParam, Integer size, Cursor cursor, SortOrder order, String key, KeyMatch keyMatch, TotalMode total, boolean withValue) throws ArlasException {
+        return readPage(index.listAfter(zone, identityParam, size, cursor, order, key, keyMatch, total), withValue);
+    }
+
+    private Pair<Long, List<Data>> readPage(Pair<Long, List<FileEntry>> entries, boolean withValue) throws ArlasException {
+        if (!withValue) {
+            return Pair.of(entries.getLeft(), entries.getRight().stream().map(entry -> entry.toData(null)).toList());
+        }
+        List<Data> reads;
+        if (entries.getRight().size() <= INLINE_READ_PAGE_SIZE) {
+            reads = new ArrayList<>();
+            for (FileEntry entry : entries.getRight()) {
+                reads.add(read(entry));
+            }
         } else {
-            list = rawlist.sorted(Comparator.comparing(Data::getLastUpdateDate))
-                    .collect(Collectors.toList());
+            List<Future<Data>> futures = new ArrayList<>();
+            for (FileEntry entry : entries.getRight()) {
+                futures.add(readers.submit(() -> read(entry)));
+            }
+            reads = await(futures);
+        }
+        List<Data> list = new ArrayList<>();
+        for (Data data : reads) {
+            if (data != null) {
+                list.add(data);
+            }
         }
-        return Pair.of((long) list.size(),
-                (page - 1) * size > list.size() ? Collections.emptyList() : list.subList((page - 1) * size, Math.min(list.size(), page * size)));
+        return Pair.of(entries.getLeft(), list);
     }
 
     public Data getById(String id, IdentityParam identityParam) throws ArlasException {
-        List<FileWrapper> list = getByFilenameFilter(suffixFilter(id), identityParam, false, null);
-        if (list.size() == 1) {
-            if (PersistenceService.isReaderOnData(identityParam, list.get(0).data) ||
-                    PersistenceService.isWriterOnData(identityParam, list.get(0).data)) {
-                return list.get(0).data;
-            } else {
-                throw new ForbiddenException("You are not authorized to view this resource");
-            }
+        FileEntry entry = getEntry(id);
+        if (PersistenceService.isReaderOnData(identityParam, entry) ||
+                PersistenceService.isWriterOnData(identityParam, entry)) {
+            return Optional.ofNullable(read(entry))
+                    .orElseThrow(() -> new NotFoundException("Data with id " + id + " not found."));
         } else {
-            throw new NotFoundException("Data with id " + id + " not found.");
+            throw new ForbiddenException("You are not authorized to view this resource");
         }
     }
 
@@ -108,110 +180,336 @@ public class FileSystemPersistenceServiceImpl implements PersistenceService {
                 new ArrayList<>(writers),
                 new ArrayList<>(readers),
                 new Date());
-        try (FileOutputStream fos = new FileOutputStream(storageFolder.concat(getFileName(newData)))) {
-            objectMapper.writeValue(fos, newData);
-            return newData;
+        Path path = layout.pathOf(storageFolder, newData);
+        try {
+            Files.createDirectories(path.getParent());
+        } catch (IOException e) {
+            throw new ArlasException("An error occur in creating folder: " + e.getMessage());
+        }
+        try {
+            writer.write(path, DataFileCodec.toBytes(newData));
+            put(new FileEntry(newData, path, lastModified(path)));
         } catch (IOException e) {
             throw new ArlasException("An error occur in writing file: " + e.getMessage());
         }
+        return newData;
     }
 
     @Override
     public Data update(String id, String key, IdentityParam identityParam, Set<String> readers, Set<String> writers, String value, Date lastUpdate) throws ArlasException {
-        List<FileWrapper> list = getByFilenameFilter(suffixFilter(id), identityParam, false, null);
-        if (list.size() == 1) {
-            Data data = list.get(0).data;
-            String zone = data.getDocZone();
-            if (PersistenceService.isWriterOnData(identityParam, data)) {
+        ReentrantLock lock = lockOf(id);
+        lock.lock();
+        try {
+            FileEntry entry = getEntry(id);
+            if (PersistenceService.isWriterOnData(identityParam, entry)) {
+                String zone = entry.getDocZone();
                 PersistenceService.checkReadersWritersGroups(zone, identityParam, readers,writers);
-                data.setDocKey(Optional.ofNullable(key).orElse(data.getDocKey()));
-                Set<String> readersToUpdate = Optional.ofNullable(readers).orElse(new HashSet<>(data.getDocReaders()));
-                Set<String> writersToUpdate = Optional.ofNullable(writers).orElse(new HashSet<>(data.getDocWriters()));
-                data.setDocReaders(new ArrayList<>(readersToUpdate));
-                data.setDocWriters(new ArrayList<>(writersToUpdate));
-                if (data.getLastUpdateDate().getTime() == lastUpdate.getTime()) {
+                // the entry is the last written version as long as we hold the lock of the document
+                if (entry.getLastUpdateDate().getTime() == lastUpdate.getTime()) {
+                    Data data = entry.toData(value);
+                    data.setDocKey(Optional.ofNullable(key).orElse(data.getDocKey()));
+                    Set<String> readersToUpdate = Optional.ofNullable(readers).orElse(new HashSet<>(data.getDocReaders()));
+                    Set<String> writersToUpdate = Optional.ofNullable(writers).orElse(new HashSet<>(data.getDocWriters()));
+                    data.setDocReaders(new ArrayList<>(readersToUpdate));
+                    data.setDocWriters(new ArrayList<>(writersToUpdate));
                     data.setDocValue(value,true);
-                    try (FileOutputStream fos = new FileOutputStream(list.get(0).file.getAbsolutePath())) {
-                        objectMapper.writeValue(fos, data);
-                        list.get(0).file.renameTo(new File(storageFolder.concat(getFileName(data))));
-                        return data;
+                    PersistenceService.ensureNewVersion(data, entry);
+                    Path path = layout.pathOf(storageFolder, data);
+                    long lastModified;
+                    try {
+                        Files.createDirectories(path.getParent());
+                        writer.write(path, DataFileCodec.toBytes(data));
+                        lastModified = lastModified(path);
                     } catch (IOException e) {
                         throw new ArlasException("An error occur in writing file: " + e.getMessage());
                     }
+                    try {
+                        if (!path.equals(entry.getPath())) {
+                            // a crash before this point leaves two versions, the oldest is dropped at startup
+                            writer.delete(entry.getPath());
+                        }
+                    } catch (IOException e) {
+                        throw new ArlasException("An error occur in renaming file: " + e.getMessage());
+                    }
+                    put(new FileEntry(data, path, lastModified));
+                    return data;
                 } else {
                     throw new ConflictException("The data can not be updated due to conflicts.");
                 }
             } else {
                 throw new ForbiddenException("You are not authorized to update this resource");
             }
-        } else {
-            throw new NotFoundException("Data with id " + id + " not found.");
+        } finally {
+            lock.unlock();
         }
     }
 
     @Override
     public Data deleteById(String id, IdentityParam identityParam) throws ArlasException {
-        List<FileWrapper> list = getByFilenameFilter(suffixFilter(id), identityParam, false, null);
-        if (list.size() == 1) {
-            if (PersistenceService.isWriterOnData(identityParam, list.get(0).data)) {
+        ReentrantLock lock = lockOf(id);
+        lock.lock();
+        try {
+            FileEntry entry = getEntry(id);
+            if (PersistenceService.isWriterOnData(identityParam, entry)) {
+                Data data = read(entry);
                 try {
-                    list.get(0).file.delete();
+                    writer.delete(entry.getPath());
                 } catch (Exception e) {
                     throw new ArlasException("Could not delete data: " + e.getMessage());
                 }
-                return list.get(0).data;
+                remove(id);
+                return data;
             } else {
                 throw new ForbiddenException("You are not authorized to delete this resource");
             }
-        } else {
-            throw new NotFoundException("Data with id " + id + " not found.");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private FileEntry getEntry(String id) throws NotFoundException {
+        return Optional.ofNullable(index.get(id))
+                .orElseThrow(() -> new NotFoundException("Data with id " + id + " not found."));
+    }
+
+    @Override
+    public void stop() throws Exception {
+        if (watcher != null) {
+            watcher.close();
+        }
+        readers.shutdown();
+        if (catalog != null) {
+            catalog.checkpoint();
+            catalog.close();
+        }
+    }
+
+    /**
+     * Brings the index up to date with a file changed by another process. The file is read only if its
+     * modification time differs from the one of the indexed version.
+     */
+    @Override
+    public void refresh(Path file) {
+        if (!layout.isDocument(storageFolder, file) || Files.isDirectory(file)) {
+            return;
+        }
+        String id = FileSystemLayout.idOf(storageFolder, file);
+        ReentrantLock lock = lockOf(id);
+        lock.lock();
+        try {
+            FileEntry entry = index.get(id);
+            long lastModified;
+            try {
+                lastModified = lastModified(file);
+            } catch (NoSuchFileException e) {
+                if (entry != null && entry.getPath().equals(file)) {
+                    remove(id);
+                }
+                return;
+            }
+            if (entry != null && entry.getPath().equals(file) && entry.getLastModified() == lastModified) {
+                return;
+            }
+            FileEntry current = new FileEntry(DataFileCodec.readMetadata(file), file, lastModified);
+            // a renaming update writes the new file before deleting the old one
+            if (entry == null || entry.getPath().equals(file) || current.getLastUpdateDate().after(entry.getLastUpdateDate())) {
+                put(current);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Could not refresh " + file + ": " + e.getMessage());
+        } finally {
+            lock.unlock();
         }
     }
 
-    private String getFileName(Data data){
-        // zone_org_key_userid_id
-        return String.join("_",
-                data.getDocZone(),
-                data.getDocOrganization(),
-                data.getDocKey(),
-                data.getDocOwner(),
-                data.getId());
+    /**
+     * Compares the whole folder with the index, catching up with the changes whose events were missed.
+     */
+    @Override
+    public void reconcile() {
+        Set<Path> files = new HashSet<>();
+        try (Stream<Path> paths = Files.walk(storageFolder, 3)) {
+            paths.filter(path -> layout.isDocument(storageFolder, path) && Files.isRegularFile(path)).forEach(path -> {
+                files.add(path);
+                refresh(path);
+            });
+        } catch (IOException | UncheckedIOException e) {
+            LOGGER.warn("Could not reconcile folder " + storageFolder + ": " + e.getMessage());
+            return;
+        }
+        for (FileEntry entry : List.copyOf(index.entries())) {
+            if (!files.contains(entry.getPath())) {
+                refresh(entry.getPath());
+            }
+        }
     }
 
-    private Predicate<Path> prefixFilter(String zone, String org) {
-        String prefix = org.isBlank() ? zone + "_" : zone + "_" + org + "_";
-        return p -> p.getFileName().toString().startsWith(prefix);
+    private static long lastModified(Path path) throws IOException {
+        return Files.getLastModifiedTime(path).toMillis();
     }
 
-    private Predicate<Path> suffixFilter(String suffix) {
-        return p -> p.getFileName().toString().endsWith(suffix);
+    private ReentrantLock lockOf(String id) {
+        return locks[Math.floorMod(id.hashCode(), locks.length)];
     }
 
-    private List<FileWrapper> getByFilenameFilter(Predicate<Path> fileFilter, IdentityParam identityParam, boolean filterOnRights, String key) throws ArlasException {
-        try (Stream<Path> paths = Files.walk(Paths.get(storageFolder))) {
+    /**
+     * Reads the last version of a document, following it if it has been renamed by a concurrent update.
+     * Returns null if the document has been deleted meanwhile.
+     */
+    private Data read(FileEntry entry) throws ArlasException {
+        while (entry != null) {
+            try {
+                return DataFileCodec.read(entry.getPath());
+            } catch (NoSuchFileException e) {
+                // renamed or deleted by another process whose change has not been seen yet
+                refresh(entry.getPath());
+                FileEntry current = index.get(entry.getId());
+                if (current != null && current.getPath().equals(entry.getPath())) {
+                    throw new ArlasException("An error occur in reading file: " + e.getMessage());
+                }
+                entry = current;
+            } catch (IOException e) {
+                throw new ArlasException("An error occur in reading file: " + e.getMessage());
+            }
+        }
+        return null;
+    }
 
-            Stream<FileWrapper> pathsStream = paths
-                    .filter(Files::isRegularFile)
-                    .filter(fileFilter)
-                    .map(Path::toFile)
-                    .map(f -> {
-                        try {
-                            return new FileWrapper(f, objectMapper.readValue(f, Data.class));
-                        } catch (IOException e) {
-                            throw new RuntimeException();
+    /**
+     * Indexes the documents of the folder. The entries of the catalog are trusted for the directories which have
+     * not been modified since its snapshot, the documents of the other directories are read unless the catalog
+     * knows their current version.
+     */
+    private void buildIndex() throws ArlasException {
+        Pair<Map<Path, Long>, Map<String, FileEntry>> catalogued = catalog != null ? catalog.load() : null;
+        Map<Path, Long> directories = catalogued != null ? catalogued.getLeft() : Map.of();
+        Map<Path, List<FileEntry>> entries = catalogued != null
+                ? catalogued.getRight().values().stream().collect(Collectors.groupingBy(entry -> entry.getPath().getParent()))
+                : Map.of();
+        int scanned = 0;
+        List<Path> toRead = new ArrayList<>();
+        try (Stream<Path> paths = Files.walk(storageFolder, 2)) {
+            for (Path directory : paths.filter(directory -> FileSystemCatalog.isDocumentDirectory(storageFolder, directory)).toList()) {
+                List<FileEntry> known = entries.getOrDefault(directory, List.of());
+                if (Objects.equals(directories.get(directory), lastModified(directory))) {
+                    for (FileEntry entry : known) {
+                        if (layout.isDocument(storageFolder, entry.getPath())) {
+                            index(entry);
                         }
-                    })
-                    .filter(fw -> !filterOnRights || PersistenceService.isReaderOnData(identityParam, fw.data) ||
-                            PersistenceService.isWriterOnData(identityParam, fw.data));
+                    }
+                } else {
+                    toRead.addAll(scanDirectory(directory, known));
+                    scanned++;
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            throw new ArlasException("Could not index folder " + storageFolder + ": " + e.getMessage());
+        }
+        // each file is decoded once, by batches spread over the readers
+        List<Future<Void>> batches = new ArrayList<>();
+        for (int from = 0; from < toRead.size(); from += INDEXING_BATCH_SIZE) {
+            List<Path> batch = toRead.subList(from, Math.min(from + INDEXING_BATCH_SIZE, toRead.size()));
+            batches.add(readers.submit(() -> {
+                for (Path path : batch) {
+                    try {
+                        index(new FileEntry(DataFileCodec.readMetadata(path), path, lastModified(path)));
+                    } catch (IOException e) {
+                        LOGGER.error("File " + path + " is not a valid document and is ignored: " + e.getMessage());
+                    }
+                }
+                return null;
+            }));
+        }
+        await(batches);
+        LOGGER.info("Indexed " + index.size() + " documents from " + storageFolder + " (" + layout + " layout, "
+                + scanned + " directories scanned)");
+        if (catalog != null) {
+            try {
+                if (scanned > 0) {
+                    catalog.checkpoint();
+                } else {
+                    catalog.open();
+                }
+            } catch (IOException e) {
+                throw new ArlasException("Could not write catalog of folder " + storageFolder + ": " + e.getMessage());
+            }
+        }
+    }
 
-            if(key != null){
-                pathsStream = pathsStream.filter(fw -> fw.data.getDocKey().toLowerCase().contains(key.toLowerCase()));
+    /**
+     * Indexes the documents of a directory whose version is known by the catalog and returns the other ones.
+     */
+    private List<Path> scanDirectory(Path directory, List<FileEntry> known) throws IOException {
+        Map<Path, FileEntry> knownByPath = known.stream().collect(Collectors.toMap(FileEntry::getPath, entry -> entry));
+        List<Path> toRead = new ArrayList<>();
+        try (Stream<Path> paths = Files.list(directory)) {
+            for (Path path : paths.filter(Files::isRegularFile).toList()) {
+                if (AtomicFileWriter.isTemporary(path)) {
+                    // left by a write interrupted before its move, the document still has its previous content
+                    Files.delete(path);
+                } else if (layout.isDocument(storageFolder, path)) {
+                    FileEntry entry = knownByPath.get(path);
+                    if (entry != null && entry.getLastModified() == lastModified(path)) {
+                        index(entry);
+                    } else {
+                        toRead.add(path);
+                    }
+                }
             }
-            return pathsStream.collect(Collectors.toList());
+        }
+        return toRead;
+    }
+
+    private void put(FileEntry entry) {
+        index.put(entry);
+        if (catalog != null) {
+            catalog.put(entry);
+        }
+    }
 
+    private void remove(String id) {
+        if (index.remove(id) != null && catalog != null) {
+            catalog.remove(id);
+        }
+    }
+
+    private void index(FileEntry entry) throws IOException {
+        ReentrantLock lock = lockOf(entry.getId());
+        lock.lock();
+        try {
+            FileEntry previous = index.get(entry.getId());
+            if (previous == null) {
+                index.put(entry);
+            } else {
+                // a renaming update was interrupted after writing the new version
+                boolean newer = entry.getLastUpdateDate().after(previous.getLastUpdateDate());
+                FileEntry obsolete = newer ? previous : entry;
+                LOGGER.warn("Removing " + obsolete.getPath() + ", an obsolete version of document " + entry.getId());
+                if (newer) {
+                    index.put(entry);
+                }
+                writer.delete(obsolete.getPath());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
 
-        } catch (Exception e) {
-            throw new ArlasException("Error");
+    private <T> List<T> await(List<Future<T>> futures) throws ArlasException {
+        List<T> results = new ArrayList<>();
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ArlasException("Interrupted while reading folder " + storageFolder);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof ArlasException arlasException) {
+                    throw arlasException;
+                }
+                throw new ArlasException("An error occur in reading folder " + storageFolder + ": " + e.getCause().getMessage());
+            }
         }
+        return results;
     }
 }
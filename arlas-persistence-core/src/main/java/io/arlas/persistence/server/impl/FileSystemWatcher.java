@@ -0,0 +1,152 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.persistence.server.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Follows the changes made to the local folder by other processes sharing it.
+ * Files notified by the watch service are refreshed as soon as the events are received, and the whole folder is
+ * periodically reconciled with the index since events can be lost (overflow) or never delivered (network file systems).
+ */
+class FileSystemWatcher implements Closeable {
+    protected static Logger LOGGER = LoggerFactory.getLogger(FileSystemWatcher.class);
+    // the root and the two levels of shard directories
+    private static final int WATCHED_DEPTH = 2;
+
+    interface Listener {
+        void refresh(Path file);
+
+        void reconcile();
+    }
+
+    private final Path root;
+    private final Listener listener;
+    private final WatchService watchService;
+    private final ScheduledExecutorService reconciler;
+    private final Thread watcher;
+    private volatile boolean closed;
+
+    FileSystemWatcher(Path root, Listener listener, long reconcileIntervalMillis) throws IOException {
+        this.root = root;
+        this.listener = listener;
+        this.watchService = root.getFileSystem().newWatchService();
+        registerAll(root);
+        this.reconciler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "file-system-reconciler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (reconcileIntervalMillis > 0) {
+            reconciler.scheduleWithFixedDelay(this::reconcile, reconcileIntervalMillis, reconcileIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+        this.watcher = new Thread(this::watch, "file-system-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        reconciler.shutdownNow();
+        watchService.close();
+    }
+
+    private void watch() {
+        while (!closed) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path directory = (Path) key.watchable();
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == OVERFLOW) {
+                    reconciler.execute(this::reconcile);
+                    continue;
+                }
+                Path path = directory.resolve((Path) event.context());
+                if (event.kind() == ENTRY_CREATE && Files.isDirectory(path) && depth(path) <= WATCHED_DEPTH) {
+                    // documents may have been written before the directory is watched
+                    registerAll(path);
+                    try (Stream<Path> files = Files.walk(path)) {
+                        files.filter(Files::isRegularFile).forEach(listener::refresh);
+                    } catch (IOException e) {
+                        LOGGER.warn("Could not read " + path + ": " + e.getMessage());
+                    }
+                } else {
+                    listener.refresh(path);
+                }
+            }
+            key.reset();
+        }
+    }
+
+    private void reconcile() {
+        try {
+            listener.reconcile();
+        } catch (Exception e) {
+            LOGGER.error("Could not reconcile " + root, e);
+        }
+    }
+
+    /**
+     * Watches a directory and its sub-directories down to the shard directories: up to 1 + 256 + 65,536 watches with
+     * the sharded layout. A directory which can not be watched, for instance past the inotify limit
+     * (fs.inotify.max_user_watches), is only followed by the reconciliation.
+     */
+    private void registerAll(Path directory) {
+        int failures = 0;
+        IOException failure = null;
+        try (Stream<Path> directories = Files.walk(directory, WATCHED_DEPTH - depth(directory))) {
+            for (Path watched : directories.filter(Files::isDirectory).toList()) {
+                try {
+                    watched.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+                } catch (IOException e) {
+                    failures++;
+                    failure = e;
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            LOGGER.warn("Could not list the directories of " + directory + " to watch: " + e.getMessage());
+        }
+        if (failures > 0) {
+            LOGGER.warn("Could not watch " + failures + " directories of " + directory + ", their changes are only caught by"
+                    + " the reconciliation: " + failure.getMessage());
+        }
+    }
+
+    private int depth(Path path) {
+        return root.equals(path) ? 0 : root.relativize(path).getNameCount();
+    }
+}
@@ -19,6 +19,9 @@
 
 package io.arlas.persistence.server.impl;
 
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
 import com.google.api.gax.rpc.AlreadyExistsException;
 import com.google.api.gax.rpc.FailedPreconditionException;
 import com.google.cloud.Timestamp;
@@ -33,14 +36,22 @@ import io.arlas.persistence.server.core.PersistenceService;
 import io.arlas.persistence.server.exceptions.ConflictException;
 import io.arlas.persistence.server.exceptions.ForbiddenException;
 import io.arlas.persistence.server.model.Data;
+import io.arlas.persistence.server.model.DataMetadata;
+import io.arlas.persistence.server.utils.Cursor;
+import io.arlas.persistence.server.utils.KeyMatch;
 import io.arlas.persistence.server.utils.SortOrder;
+import io.arlas.persistence.server.utils.TotalMode;
 import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.*;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -48,12 +59,18 @@ import static io.arlas.filter.config.TechnicalRoles.GROUP_PUBLIC;
 
 public class GoogleFirestorePersistenceServiceImpl implements PersistenceService {
     protected static Logger LOGGER = LoggerFactory.getLogger(GoogleFirestorePersistenceServiceImpl.class);
+    private static final int MAX_DISJUNCTIONS = 30;
 
     private final String collection;
     private final Firestore db;
+    private final Executor executor;
 
-    public GoogleFirestorePersistenceServiceImpl(String collection) throws ArlasException {
+    /**
+     * @param executor bounded executor in which the results of Firestore are processed, instead of the gRPC threads
+     */
+    public GoogleFirestorePersistenceServiceImpl(String collection, Executor executor) throws ArlasException {
         this.collection = collection;
+        this.executor = executor;
         this.db = FirestoreOptions.getDefaultInstance().getService();
 
         LOGGER.info("Creating indices for collection " + collection);
@@ -138,159 +155,359 @@ public class GoogleFirestorePersistenceServiceImpl implements PersistenceService
     }
 
     @Override
-    public Pair<Long, List<Data>> list(String zone, IdentityParam identityParam, Integer size, Integer page, SortOrder order, String key) throws ArlasException {
+    public Pair<Long, List<Data>> list(String zone, IdentityParam identityParam, Integer size, Integer page, SortOrder order, String key, KeyMatch keyMatch, TotalMode total, boolean withValue) throws ArlasException {
+        return await(listAsync(zone, identityParam, size, page, order, key, keyMatch, total, withValue));
+    }
+
+    @Override
+    public CompletableFuture<Pair<Long, List<Data>>> listAsync(String zone, IdentityParam identityParam, Integer size, Integer page, SortOrder order, String key, KeyMatch keyMatch, TotalMode total, boolean withValue) {
+        List<Query> queries = getListQueries(zone, identityParam, key);
+        List<Query> counts = getCountQueries(zone, identityParam, key, queries);
+        int offset = (page - 1) * size;
+        if (queries.size() == 1) {
+            return runList(queries, counts, q -> orderBy(q, order).limit(size).offset(offset), order, 0, size, total, withValue);
+        }
+        // each chunk returns the documents up to the end of the page, the previous pages are skipped once merged
+        return runList(queries, counts, q -> orderBy(q, order).limit(offset + size), order, offset, size, total, withValue);
+    }
+
+    @Override
+    public Pair<Long, List<Data>> listAfter(String zone, IdentityParam identityParam, Integer size, Cursor cursor, SortOrder order, String key, KeyMatch keyMatch, TotalMode total, boolean withValue) throws ArlasException {
+        return await(listAfterAsync(zone, identityParam, size, cursor, order, key, keyMatch, total, withValue));
+    }
+
+    /**
+     * Starts after the cursor on (lastUpdateDate, document id) instead of skipping the previous pages, which Firestore
+     * would read and bill. The implicit document id ordering of the composite indices makes the extra sort free.
+     */
+    @Override
+    public CompletableFuture<Pair<Long, List<Data>>> listAfterAsync(String zone, IdentityParam identityParam, Integer size, Cursor cursor, SortOrder order, String key, KeyMatch keyMatch, TotalMode total, boolean withValue) {
+        List<Query> queries = getListQueries(zone, identityParam, key);
+        return runList(queries, getCountQueries(zone, identityParam, key, queries), q -> {
+            Query pageQuery = orderBy(q, order).limit(size);
+            return cursor.isStart() ? pageQuery
+                    : pageQuery.startAfter(Timestamp.of(cursor.getLastUpdateDate()), cursor.getId());
+        }, order, 0, size, total, withValue);
+    }
+
+    private Query orderBy(Query query, SortOrder order) {
+        Query.Direction direction = order == SortOrder.ASC ? Query.Direction.ASCENDING : Query.Direction.DESCENDING;
+        return query.orderBy(Data.lastUpdateDateColumn, direction).orderBy(FieldPath.documentId(), direction);
+    }
+
+    /**
+     * Firestore accepts at most 30 disjunctions per query and the filter has one per (organisation, entity) pair, plus
+     * the public one: the entities of users with many groups are split in chunks, one query per chunk.
+     */
+    private List<Query> getListQueries(String zone, IdentityParam identityParam, String key) {
+        List<Query> queries = new ArrayList<>();
+        for (List<String> chunk : getEntityChunks(identityParam)) {
+            queries.add(getQuery(zone, key, Filter.or(
+                    Filter.arrayContainsAny(Data.docEntitiesColumn, List.of(GROUP_PUBLIC)),
+                    getEntitiesFilter(identityParam, chunk))));
+        }
+        return queries;
+    }
+
+    /**
+     * Queries counted for the total, with count aggregations which Firestore bills per batch of index entries instead
+     * of per document. With several chunks, the public documents are counted once, by their own query, and the chunks
+     * without them.
+     */
+    private List<Query> getCountQueries(String zone, IdentityParam identityParam, String key, List<Query> listQueries) {
+        if (listQueries.size() == 1) {
+            return listQueries;
+        }
+        List<Query> queries = new ArrayList<>();
+        queries.add(getQuery(zone, key, Filter.arrayContainsAny(Data.docEntitiesColumn, List.of(GROUP_PUBLIC))));
+        for (List<String> chunk : getEntityChunks(identityParam)) {
+            queries.add(getQuery(zone, key, getEntitiesFilter(identityParam, chunk)));
+        }
+        return queries;
+    }
+
+    private static List<List<String>> getEntityChunks(IdentityParam identityParam) {
         List<String> entities =  new ArrayList<>(identityParam.groups);
         entities.add(identityParam.userId);
-        Filter filter = Filter.or(
-                Filter.arrayContainsAny(Data.docEntitiesColumn, List.of(GROUP_PUBLIC)),
-                Filter.and(
-                        Filter.inArray(Data.organizationColumn, identityParam.organisation),
-                        Filter.arrayContainsAny(Data.docEntitiesColumn, entities)
-                ));
+        int chunkSize = Math.max(1, (MAX_DISJUNCTIONS - 1) / Math.max(1, identityParam.organisation.size()));
+        List<List<String>> chunks = new ArrayList<>();
+        for (int i = 0; i < entities.size(); i += chunkSize) {
+            chunks.add(entities.subList(i, Math.min(i + chunkSize, entities.size())));
+        }
+        return chunks;
+    }
+
+    private static Filter getEntitiesFilter(IdentityParam identityParam, List<String> entities) {
+        return Filter.and(
+                Filter.inArray(Data.organizationColumn, identityParam.organisation),
+                Filter.arrayContainsAny(Data.docEntitiesColumn, entities));
+    }
+
+    private Query getQuery(String zone, String key, Filter filter) {
         if(key != null){
-            filter = Filter.and(
-                    Filter.or(
-                            Filter.arrayContainsAny(Data.docEntitiesColumn, List.of(GROUP_PUBLIC)),
-                            Filter.and(
-                                    Filter.inArray(Data.organizationColumn, identityParam.organisation),
-                                    Filter.arrayContainsAny(Data.docEntitiesColumn, entities)
-                            ),
-                    // We can't make %like%  request with firestore
-                    Filter.equalTo(Data.keyColumn, key)
-            ));
+            // We can't make %like%  request with firestore, nor case insensitive prefix ones
+            filter = Filter.and(filter, Filter.equalTo(Data.keyColumn, key));
         }
-        try {
-            return Pair.of(
-                    (long) db.collection(this.collection)
-                            .whereEqualTo(Data.zoneColumn, zone)
-                            .where(filter)
-                            .get()
-                            .get()
-                            .size(),
-
-                    db.collection(this.collection)
-                            .whereEqualTo(Data.zoneColumn, zone)
-                            .where(filter)
-                            .orderBy(Data.lastUpdateDateColumn, order == SortOrder.ASC ? Query.Direction.ASCENDING : Query.Direction.DESCENDING)
-                            .limit(size)
-                            .offset((page - 1) * size)
-                            .get()
-                            .get()
-                            .getDocuments()
-                            .stream()
-                            .map(d -> {
-                                    try {
-                                        return toData(d.getId(), d);
-                                    } catch (NotFoundException e) { //can't happen in this case
-                                        return null;
-                                    }
-                                })
-                                .filter(Objects::nonNull)
-                                .collect(Collectors.toList()));
-        } catch (FailedPreconditionException e) {
-            LOGGER.error(e.getMessage()); // happens when index is missing
-            throw new ArlasException("Error listing document: " + e.getMessage());
-        } catch (InterruptedException | ExecutionException e) {
-            throw new ArlasException("Error listing document: " + e.getMessage());
+        return db.collection(this.collection)
+                .whereEqualTo(Data.zoneColumn, zone)
+                .where(filter);
+    }
+
+    /**
+     * Sends the page and total queries of all the chunks at once, then merges the sorted pages without the documents
+     * returned by several chunks. The total sums the counts of the count queries, see
+     * {@link #getCountQueries(String, IdentityParam, String, List)}.
+     */
+    private CompletableFuture<Pair<Long, List<Data>>> runList(List<Query> queries, List<Query> countQueries, UnaryOperator<Query> paging, SortOrder order, int skip, int size, TotalMode total, boolean withValue) {
+        List<ApiFuture<QuerySnapshot>> pages = new ArrayList<>();
+        for (Query query : queries) {
+            Query pageQuery = paging.apply(query);
+            if (!withValue) {
+                pageQuery = pageQuery.select(Data.keyColumn, Data.zoneColumn, Data.ownerColumn, Data.organizationColumn,
+                        Data.writersColumn, Data.readersColumn, Data.docEntitiesColumn, Data.lastUpdateDateColumn);
+            }
+            pages.add(pageQuery.get());
         }
+        // the total is counted by Firestore from the index, without reading the documents, while the pages are fetched
+        CompletableFuture<Long> count;
+        if (total == TotalMode.NONE) {
+            count = CompletableFuture.completedFuture(null);
+        } else {
+            List<ApiFuture<AggregateQuerySnapshot>> counts = new ArrayList<>();
+            countQueries.forEach(query -> counts.add(query.count().get()));
+            count = toCompletable(ApiFutures.allAsList(counts)).thenApply(snapshots -> snapshots.stream()
+                    .mapToLong(AggregateQuerySnapshot::getCount)
+                    .sum());
+        }
+        Comparator<Data> comparator = Comparator.comparing(Data::getLastUpdateDate).thenComparing(Data::getId);
+        return withError(toCompletable(ApiFutures.allAsList(pages)).thenCombine(count, (snapshots, totalCount) -> {
+            Set<String> returned = new HashSet<>();
+            List<Data> data = snapshots
+                    .stream()
+                    .flatMap(page -> page.getDocuments().stream())
+                    .filter(d -> returned.add(d.getId()))
+                    .map(d -> {
+                            try {
+                                return toData(d.getId(), d);
+                            } catch (NotFoundException e) { //can't happen in this case
+                                return null;
+                            }
+                        })
+                        .filter(Objects::nonNull)
+                        .sorted(order == SortOrder.ASC ? comparator : comparator.reversed())
+                        .skip(skip)
+                        .limit(size)
+                        .collect(Collectors.toList());
+            return Pair.of(totalCount, data);
+        }), e -> {
+            if (e instanceof FailedPreconditionException) {
+                LOGGER.error(e.getMessage()); // happens when index is missing
+            }
+            return new ArlasException("Error listing document: " + e.getMessage());
+        });
     }
 
     @Override
     public Data getById(String id, IdentityParam identityParam) throws ArlasException {
-        Data data = getById(id);
-        if (PersistenceService.isReaderOnData(identityParam, data) ||
-                PersistenceService.isWriterOnData(identityParam, data)) {
-            return data;
-        } else {
-            throw new ForbiddenException("You are not authorized to get this resource");
-        }
+        return await(getByIdAsync(id, identityParam));
+    }
+
+    @Override
+    public CompletableFuture<Data> getByIdAsync(String id, IdentityParam identityParam) {
+        return getSnapshot(db.collection(collection).document(id)).thenCompose(snapshot -> {
+            try {
+                Data data = toData(id, snapshot);
+                if (PersistenceService.isReaderOnData(identityParam, data) ||
+                        PersistenceService.isWriterOnData(identityParam, data)) {
+                    return CompletableFuture.completedFuture(data);
+                } else {
+                    throw new ForbiddenException("You are not authorized to get this resource");
+                }
+            } catch (ArlasException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        });
     }
 
     @Override
     public Data create(String zone, String key, IdentityParam identityParam, Set<String> readers, Set<String> writers, String value) throws ArlasException {
-        if (identityParam.organisation.size() != 1) {
-            throw new ArlasException("A unique organisation must be set in IdParam but received: " + identityParam.organisation);
-        }
+        return await(createAsync(zone, key, identityParam, readers, writers, value));
+    }
+
+    @Override
+    public CompletableFuture<Data> createAsync(String zone, String key, IdentityParam identityParam, Set<String> readers, Set<String> writers, String value) {
         try {
+            if (identityParam.organisation.size() != 1) {
+                throw new ArlasException("A unique organisation must be set in IdParam but received: " + identityParam.organisation);
+            }
             PersistenceService.checkReadersWritersGroups(zone, identityParam, readers,writers);
-            DocumentReference docRef = db.collection(collection).document();
-            Set<String> entities = new HashSet<>();
-            entities.addAll(writers);
-            entities.addAll(readers);
-            entities.addAll(Stream.of(identityParam.userId).collect(Collectors.toSet()));
-            Data newData = new Data(docRef.getId(), key, zone, value, identityParam.userId,
-                    identityParam.organisation.get(0), new ArrayList<>(writers), new ArrayList<>(readers),
-                    new ArrayList<>(entities), new Date());
-            Timestamp result = docRef.create(newData).get().getUpdateTime();
-            LOGGER.debug("Created doc " + docRef.getId() + " at " + result);
-            return newData;
-        } catch (InterruptedException | ExecutionException e) {
-            throw new ArlasException("Error creating document", e);
+        } catch (ArlasException e) {
+            return CompletableFuture.failedFuture(e);
         }
+        DocumentReference docRef = db.collection(collection).document();
+        Set<String> entities = new HashSet<>();
+        entities.addAll(writers);
+        entities.addAll(readers);
+        entities.addAll(Stream.of(identityParam.userId).collect(Collectors.toSet()));
+        Data newData = new Data(docRef.getId(), key, zone, value, identityParam.userId,
+                identityParam.organisation.get(0), new ArrayList<>(writers), new ArrayList<>(readers),
+                new ArrayList<>(entities), new Date());
+        return withError(toCompletable(docRef.create(newData)), e -> new ArlasException("Error creating document", e))
+                .thenApply(result -> {
+                    LOGGER.debug("Created doc " + docRef.getId() + " at " + result.getUpdateTime());
+                    return newData;
+                });
     }
 
     @Override
     public Data update(String id, String key, IdentityParam identityParam, Set<String> readers, Set<String> writers, String value, Date lastUpdate) throws ArlasException {
-        try {
-            Data data = getById(id);
-            if (PersistenceService.isWriterOnData(identityParam, data)) {
-                String zone = data.getDocZone();
-                PersistenceService.checkReadersWritersGroups(zone, identityParam, readers,writers);
-                DocumentReference docRef = db.collection(collection).document(id);
-                Data newData = toData(id, docRef.get().get());
-                newData.setDocKey(Optional.ofNullable(key).orElse(data.getDocKey()));
-                Set<String> readersToUpdate = Optional.ofNullable(readers).orElse(new HashSet<>(data.getDocReaders()));
-                Set<String> writersToUpdate = Optional.ofNullable(writers).orElse(new HashSet<>(data.getDocWriters()));
-                newData.setDocReaders(new ArrayList<>(readersToUpdate));
-                newData.setDocWriters(new ArrayList<>(writersToUpdate));
-                Set<String> entities = new HashSet<>();
-                entities.addAll(readersToUpdate);
-                entities.addAll(writersToUpdate);
-                entities.addAll(Stream.of(data.getDocOwner()).collect(Collectors.toSet()));
-                newData.setDocEntities(new ArrayList<>(entities));
-                if (data.getLastUpdateDate().equals(lastUpdate)) {
-                    newData.setDocValue(value, true);
-                    Timestamp result = docRef.set(newData).get().getUpdateTime();
-                    LOGGER.debug("Updated doc " + id + " at " + result);
-                    return newData;
+        return await(updateAsync(id, key, identityParam, readers, writers, value, lastUpdate));
+    }
+
+    /**
+     * One read and one write: the write is conditioned on the update time of the read snapshot, so a concurrent
+     * writer makes it fail with a conflict instead of being overwritten.
+     */
+    @Override
+    public CompletableFuture<Data> updateAsync(String id, String key, IdentityParam identityParam, Set<String> readers, Set<String> writers, String value, Date lastUpdate) {
+        DocumentReference docRef = db.collection(collection).document(id);
+        return getSnapshot(docRef).thenCompose(snapshot -> {
+            try {
+                Data data = toData(id, snapshot);
+                if (PersistenceService.isWriterOnData(identityParam, data)) {
+                    String zone = data.getDocZone();
+                    PersistenceService.checkReadersWritersGroups(zone, identityParam, readers,writers);
+                    Data newData = toData(id, snapshot);
+                    newData.setDocKey(Optional.ofNullable(key).orElse(data.getDocKey()));
+                    Set<String> readersToUpdate = Optional.ofNullable(readers).orElse(new HashSet<>(data.getDocReaders()));
+                    Set<String> writersToUpdate = Optional.ofNullable(writers).orElse(new HashSet<>(data.getDocWriters()));
+                    newData.setDocReaders(new ArrayList<>(readersToUpdate));
+                    newData.setDocWriters(new ArrayList<>(writersToUpdate));
+                    Set<String> entities = new HashSet<>();
+                    entities.addAll(readersToUpdate);
+                    entities.addAll(writersToUpdate);
+                    entities.addAll(Stream.of(data.getDocOwner()).collect(Collectors.toSet()));
+                    newData.setDocEntities(new ArrayList<>(entities));
+                    if (data.getLastUpdateDate().equals(lastUpdate)) {
+                        newData.setDocValue(value, true);
+                        PersistenceService.ensureNewVersion(newData, new DataMetadata(data));
+                        Map<String, Object> fields = new HashMap<>();
+                        fields.put(Data.keyColumn, newData.getDocKey());
+                        fields.put(Data.readersColumn, newData.getDocReaders());
+                        fields.put(Data.writersColumn, newData.getDocWriters());
+                        fields.put(Data.docEntitiesColumn, newData.getDocEntities());
+                        fields.put(Data.valueColumn, newData.getDocValue());
+                        fields.put(Data.lastUpdateDateColumn, newData.getLastUpdateDate());
+                        return withError(toCompletable(docRef.update(fields, Precondition.updatedAt(snapshot.getUpdateTime()))),
+                                e -> toWriteError(id, e, "The data can not be update due to conflicts.", "Error updating document"))
+                                .thenApply(result -> {
+                                    LOGGER.debug("Updated doc " + id + " at " + result.getUpdateTime());
+                                    return newData;
+                                });
+                    } else {
+                        throw new ConflictException("The data can not be update due to conflicts.");
+                    }
                 } else {
-                    throw new ConflictException("The data can not be update due to conflicts.");
+                    throw new ForbiddenException("You are not authorized to update this resource");
                 }
-            } else {
-                throw new ForbiddenException("You are not authorized to update this resource");
+            } catch (ArlasException e) {
+                return CompletableFuture.failedFuture(e);
             }
-        } catch (InterruptedException | ExecutionException e) {
-            throw new ArlasException("Error updating document", e);
-        }
+        });
     }
 
     @Override
     public Data deleteById(String id, IdentityParam identityParam) throws ArlasException {
-        Data data = getById(id);
-        return deleteData(data, identityParam);
+        return await(deleteByIdAsync(id, identityParam));
     }
 
-    private Data getById(String id) throws ArlasException {
-        try {
-            return toData(id, db.collection(collection).document(id).get().get());
-        } catch (InterruptedException | ExecutionException e) {
-            throw new ArlasException("Could not get document: " + e.getMessage());
+    /**
+     * Like updates, the delete is conditioned on the update time of the snapshot the rights were checked on.
+     */
+    @Override
+    public CompletableFuture<Data> deleteByIdAsync(String id, IdentityParam identityParam) {
+        DocumentReference docRef = db.collection(collection).document(id);
+        return getSnapshot(docRef).thenCompose(snapshot -> {
+            try {
+                Data data = toData(id, snapshot);
+                if (PersistenceService.isWriterOnData(identityParam, data)) {
+                    return withError(toCompletable(docRef.delete(Precondition.updatedAt(snapshot.getUpdateTime()))),
+                            e -> toWriteError(id, e, "The data can not be deleted due to conflicts.", "Error deleting document"))
+                            .thenApply(result -> {
+                                LOGGER.debug("Delete doc " + id + " at " + result.getUpdateTime());
+                                return data;
+                            });
+                } else {
+                    throw new ForbiddenException("You are not authorized to delete this resource");
+                }
+            } catch (ArlasException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        });
+    }
+
+    /**
+     * A write conditioned on a snapshot fails with FAILED_PRECONDITION when the document has changed since, and with
+     * NOT_FOUND when it has been deleted since.
+     */
+    private static ArlasException toWriteError(String id, Throwable e, String conflict, String error) {
+        if (e instanceof FailedPreconditionException) {
+            return new ConflictException(conflict);
+        } else if (e instanceof com.google.api.gax.rpc.NotFoundException) {
+            return new NotFoundException("Doc not found with id: " + id);
         }
+        return new ArlasException(error, e);
     }
 
-    private Data deleteData(Data data, IdentityParam identityParam) throws ArlasException {
-        if (PersistenceService.isWriterOnData(identityParam, data)) {
-            try {
-                DocumentReference docRef = db.collection(collection).document(data.getId());
-                Data newData = toData(data.getId(), docRef.get().get());
-                Timestamp result = docRef.delete().get().getUpdateTime();
-                LOGGER.debug("Delete doc " + data.getId() + " at " + result);
-                return newData;
-            } catch (InterruptedException | ExecutionException | NotFoundException e) {
-                throw new ArlasException("Error updating document", e);
+    private CompletableFuture<DocumentSnapshot> getSnapshot(DocumentReference docRef) {
+        return withError(toCompletable(docRef.get()), e -> new ArlasException("Could not get document: " + e.getMessage()));
+    }
+
+    /**
+     * Completes with the Firestore future in the executor, so that the continuations do not run in the gRPC thread
+     * which completed it.
+     */
+    private <T> CompletableFuture<T> toCompletable(ApiFuture<T> future) {
+        CompletableFuture<T> completable = new CompletableFuture<>();
+        ApiFutures.addCallback(future, new ApiFutureCallback<>() {
+            @Override
+            public void onFailure(Throwable t) {
+                completable.completeExceptionally(t);
             }
-        } else {
-            throw new ForbiddenException("You are not authorized to delete this resource");
+
+            @Override
+            public void onSuccess(T result) {
+                completable.complete(result);
+            }
+        }, executor);
+        return completable;
+    }
+
+    /**
+     * Turns the failures of the future which are not already ArlasExceptions into the given one.
+     */
+    private static <T> CompletableFuture<T> withError(CompletableFuture<T> future, Function<Throwable, ArlasException> error) {
+        return future.handle((result, e) -> {
+            if (e == null) {
+                return CompletableFuture.completedFuture(result);
+            }
+            Throwable cause = unwrap(e);
+            return CompletableFuture.<T>failedFuture(cause instanceof ArlasException ? cause : error.apply(cause));
+        }).thenCompose(Function.identity());
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws ArlasException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (unwrap(e) instanceof ArlasException arlasException) {
+                throw arlasException;
+            }
+            throw new ArlasException(unwrap(e).getMessage());
         }
     }
-}
\ No newline at end of file
+
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+}
@@ -19,6 +19,9 @@
 
 package io.arlas.persistence.server.impl;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.arlas.commons.exceptions.ArlasException;
 import io.arlas.commons.exceptions.NotFoundException;
 import io.arlas.filter.core.IdentityParam;
@@ -26,60 +29,168 @@ import io.arlas.persistence.server.core.PersistenceService;
 import io.arlas.persistence.server.exceptions.ConflictException;
 import io.arlas.persistence.server.exceptions.ForbiddenException;
 import io.arlas.persistence.server.model.Data;
+import io.arlas.persistence.server.model.DataMetadata;
+import io.arlas.persistence.server.model.DataWrite;
+import io.arlas.persistence.server.utils.Cursor;
+import io.arlas.persistence.server.utils.KeyMatch;
 import io.arlas.persistence.server.utils.SortOrder;
+import io.arlas.persistence.server.utils.TotalMode;
 import io.arlas.persistence.server.utils.UUIDHelper;
 import io.dropwizard.hibernate.AbstractDAO;
 import org.apache.commons.lang3.tuple.Pair;
+import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.context.internal.ManagedSessionContext;
+import org.hibernate.type.StandardBasicTypes;
+import org.hibernate.query.NativeQuery;
 import org.hibernate.query.Query;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.Function;
 
 import static io.arlas.filter.config.TechnicalRoles.GROUP_PUBLIC;
 
 public class HibernatePersistenceServiceImpl extends AbstractDAO<Data> implements PersistenceService {
     protected static Logger LOGGER = LoggerFactory.getLogger(HibernatePersistenceServiceImpl.class);
+    private static final ObjectMapper JSON_READER = new ObjectMapper();
+    private static final TypeReference<List<String>> STRINGS = new TypeReference<>() {};
+
+    // documents loaded per request by the bulk updates, far below the 32767 parameters of a PostgreSQL statement
+    private static final int BULK_LOAD_SIZE = 1000;
+    private static final int DEFAULT_BATCH_SIZE = 50;
+    // advisory lock held by the server creating the key indexes
+    private static final long KEY_INDEXES_LOCK = 0x61726c6173L;
+
+    private final SessionFactory replica;
+    private final boolean aclArrays;
+    private final int batchSize;
 
     public HibernatePersistenceServiceImpl(SessionFactory factory) {
+        this(factory, null, false, false, false);
+    }
+
+    /**
+     * @param replica session factory of the replica database, used by the read-only units of work opened on it, or null
+     * @param aclArrays filter the lists on the docEntities array, backed by a GIN index, instead of the readers and
+     *                  writers tables. The index is created at startup if needed. The column itself, always written,
+     *                  is created and filled at startup whatever this flag.
+     * @param valueJsonb store the values in a jsonb column, converted at startup if needed. PostgreSQL then returns
+     *                   them normalized (spaces, order of the keys, duplicated keys) instead of the text sent by clients.
+     * @param keyIndexes create the indexes of the key searches at startup, concurrently: a pg_trgm GIN index for the
+     *                   substring searches and an ordered index for the prefix searches.
+     */
+    public HibernatePersistenceServiceImpl(SessionFactory factory, SessionFactory replica, boolean aclArrays, boolean valueJsonb, boolean keyIndexes) {
         super(factory);
+        this.replica = replica;
+        this.aclArrays = aclArrays;
+        int jdbcBatchSize = factory.getSessionFactoryOptions().getJdbcBatchSize();
+        this.batchSize = jdbcBatchSize > 0 ? jdbcBatchSize : DEFAULT_BATCH_SIZE;
+        migrateToAclArrays(factory, aclArrays);
+        if (valueJsonb) {
+            migrateToValueJsonb(factory);
+        }
+        if (keyIndexes) {
+            createKeyIndexes(factory);
+        }
     }
 
+    /**
+     * The session of the unit of work of the request, which is on the replica for the read-only requests routed there.
+     */
     @Override
-    public Pair<Long, List<Data>> list(String zone, IdentityParam identityParam, Integer size, Integer page, SortOrder order, String key) {
-        String from = " from Data ud "
-                + " where ud." + Data.zoneColumn + "=:zone"
-                + " and ((ud." + Data.organizationColumn + " in :organization"
-                + "   and (ud." + Data.ownerColumn + "=:userId"
-                + "   or " + getGroupsRequest(identityParam.groups) + "))"
-                + " or (" + getGroupsRequest(List.of(GROUP_PUBLIC)) + "))";
+    protected Session currentSession() {
+        return replica != null && ManagedSessionContext.hasBind(replica) ? replica.getCurrentSession() : super.currentSession();
+    }
 
-        if(key != null){
-            from = from  + " and ud." + Data.keyColumn + " ilike :searchKey";
-        }
-        Query<Long> countQuery = currentSession().createQuery("SELECT count(ud) " + from, Long.class)
-                .setParameter("zone", zone)
-                .setParameter("organization", identityParam.organisation)
-                .setParameter("userId", identityParam.userId);
-        if(key != null) {
-            countQuery = countQuery.setParameter("searchKey", "%"+key+"%");
-
-        }
-        Long totalCount = countQuery.uniqueResult();
-        Query<Data> query = currentSession().createQuery(from
-                        + " order by ud." + Data.lastUpdateDateColumn + " " + order.toString(), Data.class)
-                .setParameter("zone", zone)
-                .setParameter("organization", identityParam.organisation)
-                .setParameter("userId", identityParam.userId)
+    @Override
+    public Pair<Long, List<Data>> list(String zone, IdentityParam identityParam, Integer size, Integer page, SortOrder order, String key, KeyMatch keyMatch, TotalMode total, boolean withValue) {
+        if (total == TotalMode.EXACT) {
+            return listWithTotal(zone, identityParam, size, page, order, key, keyMatch, withValue);
+        }
+        List<Object[]> rows = setParameters(currentSession().createQuery(getSelectRequest(withValue) + getFromRequest(key, keyMatch)
+                        + " order by ud." + Data.lastUpdateDateColumn + " " + order.toString(), Object[].class), zone, identityParam, key, keyMatch)
                 .setMaxResults(size)
-                .setFirstResult((page - 1) * size);
+                .setFirstResult((page - 1) * size)
+                .list();
+        Long totalCount = total == TotalMode.ESTIMATE ? estimate(zone, identityParam, key, keyMatch) : null;
+        return Pair.of(totalCount, toDataList(rows, withValue));
+    }
+
+    /**
+     * An exact total is counted by a window function of the page request, which also selects the values if requested,
+     * a second request being only needed when the page is past the last document. HQL has no window function, the
+     * page is selected in SQL.
+     */
+    private Pair<Long, List<Data>> listWithTotal(String zone, IdentityParam identityParam, Integer size, Integer page, SortOrder order, String key, KeyMatch keyMatch, boolean withValue) {
+        NativeQuery<Object[]> query = currentSession().createNativeQuery(getMetadataSqlRequest()
+                        + (withValue ? ", cast(ud." + Data.valueColumn + " as text) as " + Data.valueColumn : "")
+                        + ", count(*) over () as total"
+                        + getFromSqlRequest(identityParam, key, keyMatch)
+                        + " order by ud." + Data.lastUpdateDateColumn + " " + order.toString(), Object[].class)
+                .addScalar(Data.idColumn, StandardBasicTypes.STRING)
+                .addScalar(Data.keyColumn, StandardBasicTypes.STRING)
+                .addScalar(Data.zoneColumn, StandardBasicTypes.STRING)
+                .addScalar(Data.ownerColumn, StandardBasicTypes.STRING)
+                .addScalar(Data.organizationColumn, StandardBasicTypes.STRING)
+                .addScalar(Data.lastUpdateDateColumn, StandardBasicTypes.TIMESTAMP);
+        if (withValue) {
+            query.addScalar(Data.valueColumn, StandardBasicTypes.STRING);
+        }
+        List<Object[]> rows = setSqlParameters(query.addScalar("total", StandardBasicTypes.LONG), zone, identityParam, key, keyMatch)
+                .setMaxResults(size)
+                .setFirstResult((page - 1) * size)
+                .list();
+        if (rows.isEmpty()) {
+            return Pair.of(page == 1 ? 0L : count(getFromRequest(key, keyMatch), zone, identityParam, key, keyMatch), List.of());
+        }
+        Long totalCount = (Long) rows.get(0)[rows.get(0).length - 1];
+        List<Data> documents = toDataList(rows, false);
+        if (withValue) {
+            for (int i = 0; i < rows.size(); i++) {
+                documents.get(i).setDocValue((String) rows.get(i)[6], false);
+            }
+        }
+        return Pair.of(totalCount, documents);
+    }
 
-        if(key != null) {
-            query = query.setParameter("searchKey", "%"+key+"%");
+    /**
+     * Seeks the page on (lastUpdateDate, id), backed by the doc_zone_idx_last_update index, so that deep pages cost as
+     * much as the first one.
+     */
+    @Override
+    public Pair<Long, List<Data>> listAfter(String zone, IdentityParam identityParam, Integer size, Cursor cursor, SortOrder order, String key, KeyMatch keyMatch, TotalMode total, boolean withValue) {
+        String from = getFromRequest(key, keyMatch);
+        Long totalCount = switch (total) {
+            case EXACT -> count(from, zone, identityParam, key, keyMatch);
+            case ESTIMATE -> estimate(zone, identityParam, key, keyMatch);
+            case NONE -> null;
+        };
+        String seek = "";
+        if (!cursor.isStart()) {
+            String operator = order == SortOrder.ASC ? ">" : "<";
+            seek = " and (ud." + Data.lastUpdateDateColumn + operator + ":lastUpdateDate"
+                    + " or (ud." + Data.lastUpdateDateColumn + "=:lastUpdateDate"
+                    + " and ud." + Data.idColumn + operator + ":id))";
+        }
+        Query<Object[]> query = setParameters(currentSession().createQuery(getSelectRequest(withValue) + from + seek
+                        + " order by ud." + Data.lastUpdateDateColumn + " " + order.toString()
+                        + ", ud." + Data.idColumn + " " + order.toString(), Object[].class), zone, identityParam, key, keyMatch)
+                .setMaxResults(size);
+        if (!cursor.isStart()) {
+            query = query.setParameter("lastUpdateDate", cursor.getLastUpdateDate())
+                    .setParameter("id", cursor.getId());
         }
-        return Pair.of(totalCount, list(query));
+        return Pair.of(totalCount, toDataList(query.list(), withValue));
     }
 
     @Override
@@ -95,11 +206,41 @@ public class HibernatePersistenceServiceImpl extends AbstractDAO<Data> implement
 
     @Override
     public Data create(String zone, String key, IdentityParam identityParam, Set<String> readers, Set<String> writers, String value) throws ArlasException {
+        return persist(newData(zone, key, identityParam, readers, writers, value));
+    }
+
+    /**
+     * The documents are persisted without the lookup done by saveOrUpdate for assigned ids, and flushed by batches of
+     * hibernate.jdbc.batch_size documents: with hibernate.order_inserts, each flush sends the rows of user_data, then
+     * those of the readers and writers tables, as JDBC batches.
+     */
+    @Override
+    public List<Data> createAll(String zone, IdentityParam identityParam, List<DataWrite> documents) throws ArlasException {
+        List<Data> created = new ArrayList<>();
+        for (DataWrite document : documents) {
+            created.add(newData(zone, document.getKey(), identityParam, document.readersSet(), document.writersSet(),
+                    document.getValue()));
+        }
+        Session session = currentSession();
+        session.setJdbcBatchSize(batchSize);
+        for (int i = 0; i < created.size(); i++) {
+            session.persist(created.get(i));
+            if ((i + 1) % batchSize == 0) {
+                session.flush();
+                session.clear();
+            }
+        }
+        session.flush();
+        session.clear();
+        return created;
+    }
+
+    private Data newData(String zone, String key, IdentityParam identityParam, Set<String> readers, Set<String> writers, String value) throws ArlasException {
         if (identityParam.organisation.size() != 1) {
             throw new ArlasException("A unique organisation must be set in IdParam but received: " + identityParam.organisation);
         }
         PersistenceService.checkReadersWritersGroups(zone, identityParam, readers, writers);
-        Data newData = new Data(UUIDHelper.generateUUID().toString(),
+        return new Data(UUIDHelper.generateUUID().toString(),
                 key,
                 zone,
                 value,
@@ -107,36 +248,232 @@ public class HibernatePersistenceServiceImpl extends AbstractDAO<Data> implement
                 identityParam.organisation.get(0),
                 new ArrayList<>(writers),
                 new ArrayList<>(readers),
+                getEntities(identityParam.userId, readers, writers),
                 new Date());
-        return persist(newData);
     }
 
+    /**
+     * The document is written by a single update conditioned on its version and on the rights of the user, like
+     * {@link #deleteData}: PostgreSQL locks the row, so of two concurrent updates of the same version, the second one
+     * matches no row. The document is only loaded when no row matches, to tell a missing document, a forbidden update
+     * and a conflict apart. The readers and writers tables are only rewritten, by bulk statements, when they change.
+     */
     @Override
     public Data update(String id, String key, IdentityParam identityParam, Set<String> readers, Set<String> writers, String value, Date lastUpdate) throws ArlasException {
-        Data data = getById(id);
-        if (PersistenceService.isWriterOnData(identityParam, data)) {
-            String zone = data.getDocZone();
-            PersistenceService.checkReadersWritersGroups(zone, identityParam, readers,writers);
-            data.setDocKey(Optional.ofNullable(key).orElse(data.getDocKey()));
-            Set<String> readersToUpdate = Optional.ofNullable(readers).orElse(new HashSet<>(data.getDocReaders()));
-            Set<String> writersToUpdate = Optional.ofNullable(writers).orElse(new HashSet<>(data.getDocWriters()));
-            data.setDocReaders(new ArrayList<>(readersToUpdate));
-            data.setDocWriters(new ArrayList<>(writersToUpdate));
-            if (data.getLastUpdateDate().getTime() == lastUpdate.getTime()) {
-                data.setDocValue(value,true);
-                return persist(data);
-            } else {
-                throw new ConflictException("The data can not be updated due to conflicts.");
+        Data updated = new Data(id, key, null, value, null, null, new ArrayList<>(), new ArrayList<>(), new Date());
+        DataMetadata previous = new DataMetadata();
+        previous.setLastUpdateDate(lastUpdate);
+        PersistenceService.ensureNewVersion(updated, previous);
+        String currentReaders = "cast(array(select r.reader from user_data_readers r where r.data_id=ud." + Data.idColumn + ") as text[])";
+        String currentWriters = "cast(array(select w.writer from user_data_writers w where w.data_id=ud." + Data.idColumn + ") as text[])";
+        String sql = "with updated as ("
+                + "   update user_data ud set"
+                + "   " + Data.keyColumn + "=" + (key != null ? ":key" : "ud." + Data.keyColumn)
+                + "   , " + Data.valueColumn + "=cast(:value as json)"
+                + "   , " + Data.docEntitiesColumn + "=array(select distinct entity from unnest("
+                + (readers != null ? "cast(:readers as text[])" : currentReaders) + " || "
+                + (writers != null ? "cast(:writers as text[])" : currentWriters) + " || "
+                + "array[cast(ud." + Data.ownerColumn + " as text)]) entity)"
+                + "   , " + Data.lastUpdateDateColumn + "=:newLastUpdateDate"
+                + "   where ud." + Data.idColumn + "=:id and ud." + Data.lastUpdateDateColumn + "=:lastUpdateDate"
+                + "   and " + getWriterSqlRequest(identityParam)
+                // the subqueries see the readers and writers as they were before the statement
+                + "   returning ud." + Data.keyColumn + ", ud." + Data.zoneColumn + ", ud." + Data.ownerColumn
+                + "   , ud." + Data.organizationColumn
+                + "   , cast(array_to_json(" + currentReaders + ") as text) as " + Data.readersColumn
+                + "   , cast(array_to_json(" + currentWriters + ") as text) as " + Data.writersColumn
+                + " )"
+                + " select * from updated";
+        NativeQuery<Object[]> query = currentSession().createNativeQuery(sql, Object[].class)
+                .addScalar(Data.keyColumn, StandardBasicTypes.STRING)
+                .addScalar(Data.zoneColumn, StandardBasicTypes.STRING)
+                .addScalar(Data.ownerColumn, StandardBasicTypes.STRING)
+                .addScalar(Data.organizationColumn, StandardBasicTypes.STRING)
+                .addScalar(Data.readersColumn, StandardBasicTypes.STRING)
+                .addScalar(Data.writersColumn, StandardBasicTypes.STRING)
+                .addSynchronizedEntityClass(Data.class)
+                .setParameter("value", value)
+                .setParameter("newLastUpdateDate", new Timestamp(updated.getLastUpdateDate().getTime()))
+                .setParameter("id", id)
+                .setParameter("lastUpdateDate", new Timestamp(lastUpdate.getTime()));
+        if (key != null) {
+            query.setParameter("key", key);
+        }
+        if (readers != null) {
+            query.setParameter("readers", readers.toArray(new String[0]));
+        }
+        if (writers != null) {
+            query.setParameter("writers", writers.toArray(new String[0]));
+        }
+        Object[] row = setWriterParameters(query, identityParam).uniqueResult();
+        if (row == null) {
+            Data data = getById(id);
+            if (!PersistenceService.isWriterOnData(identityParam, data)) {
+                throw new ForbiddenException("You are not authorized to update this resource");
+            }
+            throw new ConflictException("The data can not be updated due to conflicts.");
+        }
+        Set<String> previousReaders;
+        Set<String> previousWriters;
+        try {
+            previousReaders = new HashSet<>(JSON_READER.readValue((String) row[4], STRINGS));
+            previousWriters = new HashSet<>(JSON_READER.readValue((String) row[5], STRINGS));
+        } catch (JsonProcessingException e) {
+            throw new ArlasException("Could not read the readers and writers of the updated document: " + e.getMessage());
+        }
+        Set<String> readersToUpdate = Optional.ofNullable(readers).orElse(previousReaders);
+        Set<String> writersToUpdate = Optional.ofNullable(writers).orElse(previousWriters);
+        // a refused sharing rolls back the unit of work, and so the update
+        PersistenceService.checkReadersWritersGroups((String) row[1], identityParam, readersToUpdate, writersToUpdate);
+        Data data = new Data(id, (String) row[0], (String) row[1], value, (String) row[2], (String) row[3],
+                new ArrayList<>(writersToUpdate), new ArrayList<>(readersToUpdate),
+                getEntities((String) row[2], readersToUpdate, writersToUpdate), updated.getLastUpdateDate());
+        boolean readersChanged = !readersToUpdate.equals(previousReaders);
+        boolean writersChanged = !writersToUpdate.equals(previousWriters);
+        if (readersChanged || writersChanged) {
+            currentSession().doWork(connection -> {
+                if (readersChanged) {
+                    writeGroups(connection, "user_data_readers", "reader", List.of(data), Data::getDocReaders);
+                }
+                if (writersChanged) {
+                    writeGroups(connection, "user_data_writers", "writer", List.of(data), Data::getDocWriters);
+                }
+            });
+        }
+        return data;
+    }
+
+    /**
+     * The documents are loaded by chunks to check the rights of the user, then written with JDBC batches of
+     * hibernate.jdbc.batch_size statements conditioned on their last update date, like {@link #update}. A document in
+     * conflict makes the whole request fail and its transaction roll back.
+     */
+    @Override
+    public List<Data> updateAll(IdentityParam identityParam, List<DataWrite> documents) throws ArlasException {
+        Map<String, Data> current = new HashMap<>();
+        List<String> ids = documents.stream().map(DataWrite::getId).distinct().toList();
+        for (int i = 0; i < ids.size(); i += BULK_LOAD_SIZE) {
+            for (Data data : currentSession().createQuery("from Data ud where ud." + Data.idColumn + " in :ids", Data.class)
+                    .setParameterList("ids", ids.subList(i, Math.min(i + BULK_LOAD_SIZE, ids.size())))
+                    .list()) {
+                current.put(data.getId(), data);
+            }
+        }
+        List<Data> updated = new ArrayList<>();
+        List<Date> previousDates = new ArrayList<>();
+        List<Boolean> aclChanges = new ArrayList<>();
+        for (DataWrite document : documents) {
+            Data data = Optional.ofNullable(current.get(document.getId()))
+                    .orElseThrow(() -> new NotFoundException("Data with id " + document.getId() + " not found."));
+            if (!PersistenceService.isWriterOnData(identityParam, data)) {
+                throw new ForbiddenException("You are not authorized to update the resource " + data.getId());
+            }
+            Set<String> readers = document.readersSet();
+            Set<String> writers = document.writersSet();
+            PersistenceService.checkReadersWritersGroups(data.getDocZone(), identityParam, readers, writers);
+            if (data.getLastUpdateDate().getTime() != document.getLastUpdate()) {
+                throw new ConflictException("The data " + data.getId() + " can not be updated due to conflicts.");
+            }
+            Data newData = new Data(data.getId(),
+                    Optional.ofNullable(document.getKey()).orElse(data.getDocKey()),
+                    data.getDocZone(),
+                    document.getValue(),
+                    data.getDocOwner(),
+                    data.getDocOrganization(),
+                    new ArrayList<>(writers),
+                    new ArrayList<>(readers),
+                    getEntities(data.getDocOwner(), readers, writers),
+                    new Date());
+            PersistenceService.ensureNewVersion(newData, new DataMetadata(data));
+            updated.add(newData);
+            previousDates.add(data.getLastUpdateDate());
+            aclChanges.add(!readers.equals(new HashSet<>(data.getDocReaders())) || !writers.equals(new HashSet<>(data.getDocWriters())));
+        }
+        // the loaded documents are not written by Hibernate, the statements below replace them
+        currentSession().clear();
+        List<String> conflicts = currentSession().doReturningWork(connection -> writeAll(connection, updated, previousDates, aclChanges));
+        if (!conflicts.isEmpty()) {
+            throw new ConflictException("The data " + String.join(", ", conflicts) + " can not be updated due to conflicts.");
+        }
+        return updated;
+    }
+
+    /**
+     * @return the ids of the documents whose version changed since they were loaded
+     */
+    private List<String> writeAll(Connection connection, List<Data> documents, List<Date> previousDates, List<Boolean> aclChanges) throws SQLException {
+        List<String> conflicts = new ArrayList<>();
+        try (PreparedStatement update = connection.prepareStatement("update user_data set " + Data.keyColumn + "=?, "
+                + Data.valueColumn + "=?, " + Data.docEntitiesColumn + "=?, " + Data.lastUpdateDateColumn + "=?"
+                + " where " + Data.idColumn + "=? and " + Data.lastUpdateDateColumn + "=?")) {
+            for (int i = 0; i < documents.size(); i++) {
+                Data data = documents.get(i);
+                update.setString(1, data.getDocKey());
+                // sent untyped so that PostgreSQL converts it to the type of the column, json or jsonb
+                update.setObject(2, data.getDocValue(), Types.OTHER);
+                update.setArray(3, connection.createArrayOf("text", data.getDocEntities().toArray()));
+                update.setTimestamp(4, new Timestamp(data.getLastUpdateDate().getTime()));
+                update.setString(5, data.getId());
+                update.setTimestamp(6, new Timestamp(previousDates.get(i).getTime()));
+                update.addBatch();
+                if ((i + 1) % batchSize == 0 || i == documents.size() - 1) {
+                    int[] counts = update.executeBatch();
+                    int first = i + 1 - counts.length;
+                    for (int j = 0; j < counts.length; j++) {
+                        if (counts[j] == 0) {
+                            conflicts.add(documents.get(first + j).getId());
+                        }
+                    }
+                }
+            }
+        }
+        if (!conflicts.isEmpty()) {
+            return conflicts;
+        }
+        List<Data> aclChanged = new ArrayList<>();
+        for (int i = 0; i < documents.size(); i++) {
+            if (aclChanges.get(i)) {
+                aclChanged.add(documents.get(i));
+            }
+        }
+        writeGroups(connection, "user_data_readers", "reader", aclChanged, Data::getDocReaders);
+        writeGroups(connection, "user_data_writers", "writer", aclChanged, Data::getDocWriters);
+        return conflicts;
+    }
+
+    private void writeGroups(Connection connection, String table, String column, List<Data> documents,
+                             Function<Data, List<String>> groups) throws SQLException {
+        try (PreparedStatement delete = connection.prepareStatement("delete from " + table + " where data_id=?");
+             PreparedStatement insert = connection.prepareStatement("insert into " + table + " (data_id, " + column + ") values (?, ?)")) {
+            int inserts = 0;
+            for (int i = 0; i < documents.size(); i++) {
+                delete.setString(1, documents.get(i).getId());
+                delete.addBatch();
+                for (String group : groups.apply(documents.get(i))) {
+                    insert.setString(1, documents.get(i).getId());
+                    insert.setString(2, group);
+                    insert.addBatch();
+                    inserts++;
+                }
+                if ((i + 1) % batchSize == 0 || i == documents.size() - 1) {
+                    delete.executeBatch();
+                    if (inserts > 0) {
+                        insert.executeBatch();
+                        inserts = 0;
+                    }
+                }
             }
-        } else {
-            throw new ForbiddenException("You are not authorized to update this resource");
         }
     }
 
     @Override
     public Data deleteById(String id, IdentityParam identityParam) throws ArlasException {
-        Data data = getById(id);
-        return deleteData(data, identityParam);
+        Data data = deleteData(id, identityParam);
+        if (data == null) {
+            getById(id);
+            throw new ForbiddenException("You are not authorized to delete this resource.");
+        }
+        return data;
     }
 
     private Data getById(String id) throws ArlasException {
@@ -144,19 +481,362 @@ public class HibernatePersistenceServiceImpl extends AbstractDAO<Data> implement
                 .orElseThrow(() -> new NotFoundException("Data with id " + id + " not found."));
     }
 
-    private Data deleteData(Data data, IdentityParam identityParam) throws ForbiddenException {
-        if (PersistenceService.isWriterOnData(identityParam, data)) {
-            currentSession().delete(data);
-            return data;
+    /**
+     * Deletes the document and its readers and writers in one statement, the rights of the user being checked by its
+     * predicate (see {@link PersistenceService#isWriterOnData(IdentityParam, DataMetadata)}), and returns what was
+     * deleted. The document is not loaded beforehand.
+     * @return null if the document does not exist or if the user is not one of its writers
+     */
+    private Data deleteData(String id, IdentityParam identityParam) throws ArlasException {
+        String sql = "with deleted as ("
+                + "   delete from user_data ud where ud." + Data.idColumn + "=:id and " + getWriterSqlRequest(identityParam)
+                + "   returning ud." + Data.idColumn + ", ud." + Data.keyColumn + ", ud." + Data.zoneColumn
+                + "   , cast(ud." + Data.valueColumn + " as text) as " + Data.valueColumn + ", ud." + Data.ownerColumn
+                + "   , ud." + Data.organizationColumn + ", ud." + Data.lastUpdateDateColumn
+                + " ), readers as ("
+                + "   delete from user_data_readers r using deleted d where r.data_id=d." + Data.idColumn + " returning r.reader"
+                + " ), writers as ("
+                + "   delete from user_data_writers w using deleted d where w.data_id=d." + Data.idColumn + " returning w.writer"
+                + " )"
+                + " select d.*, cast(coalesce((select json_agg(reader) from readers), '[]') as text) as " + Data.readersColumn
+                + " , cast(coalesce((select json_agg(writer) from writers), '[]') as text) as " + Data.writersColumn
+                + " from deleted d";
+        NativeQuery<Object[]> query = currentSession().createNativeQuery(sql, Object[].class)
+                .addScalar(Data.idColumn, StandardBasicTypes.STRING)
+                .addScalar(Data.keyColumn, StandardBasicTypes.STRING)
+                .addScalar(Data.zoneColumn, StandardBasicTypes.STRING)
+                .addScalar(Data.valueColumn, StandardBasicTypes.STRING)
+                .addScalar(Data.ownerColumn, StandardBasicTypes.STRING)
+                .addScalar(Data.organizationColumn, StandardBasicTypes.STRING)
+                .addScalar(Data.lastUpdateDateColumn, StandardBasicTypes.TIMESTAMP)
+                .addScalar(Data.readersColumn, StandardBasicTypes.STRING)
+                .addScalar(Data.writersColumn, StandardBasicTypes.STRING)
+                .addSynchronizedEntityClass(Data.class)
+                .setParameter("id", id);
+        Object[] row = setWriterParameters(query, identityParam).uniqueResult();
+        if (row == null) {
+            return null;
+        }
+        try {
+            return new Data((String) row[0], (String) row[1], (String) row[2], (String) row[3], (String) row[4],
+                    (String) row[5], JSON_READER.readValue((String) row[8], STRINGS), JSON_READER.readValue((String) row[7], STRINGS),
+                    (Date) row[6]);
+        } catch (JsonProcessingException e) {
+            throw new ArlasException("Could not read the readers and writers of the deleted document: " + e.getMessage());
+        }
+    }
+
+    private static String getWriterSqlRequest(IdentityParam identityParam) {
+        if (identityParam.isAnonymous) {
+            return "ud." + Data.ownerColumn + "=:userId";
+        } else if (identityParam.organisation.isEmpty()) {
+            return "false";
+        }
+        return "ud." + Data.organizationColumn + " in (:organization)"
+                + " and (ud." + Data.ownerColumn + "=:userId"
+                + (identityParam.groups.isEmpty() ? "" : " or exists (select 1 from user_data_writers gw"
+                        + " where gw.data_id=ud." + Data.idColumn + " and gw.writer in (:groups))")
+                + ")";
+    }
+
+    /**
+     * Binds the parameters of {@link #getWriterSqlRequest(IdentityParam)}, only those its predicate contains.
+     */
+    private static <T> Query<T> setWriterParameters(Query<T> query, IdentityParam identityParam) {
+        if (identityParam.isAnonymous) {
+            return query.setParameter("userId", identityParam.userId);
+        } else if (identityParam.organisation.isEmpty()) {
+            return query;
+        }
+        query = query.setParameter("userId", identityParam.userId)
+                .setParameterList("organization", identityParam.organisation);
+        return identityParam.groups.isEmpty() ? query : query.setParameterList("groups", identityParam.groups);
+    }
+
+    /**
+     * The text of the request only depends on the presence of a key filter: the groups are bound as a single array
+     * parameter (see {@link AclFunctionContributor}) so that Hibernate and PostgreSQL reuse the same plan for every
+     * user. In array mode, the entities of the user (groups and
+     * id) are matched against docEntities like in the Firestore engine.
+     */
+    private String getFromRequest(String key, KeyMatch keyMatch) {
+        String from = " from Data ud "
+                + " where ud." + Data.zoneColumn + "=:zone"
+                + " and ((ud." + Data.organizationColumn + " in :organization"
+                + "   and " + (aclArrays ? getOverlapRequest("entities")
+                        : "(ud." + Data.ownerColumn + "=:userId or " + getGroupsRequest("groups") + ")") + ")"
+                + " or " + (aclArrays ? getOverlapRequest("publicGroups") : getGroupsRequest("publicGroups")) + ")";
+
+        if(key != null){
+            from = from  + " and " + getKeyRequest(keyMatch);
+        }
+        return from;
+    }
+
+    /**
+     * A substring search is served by the doc_key_trgm_idx trigram index, a prefix search by the doc_key_prefix_idx
+     * index on the lower case keys.
+     */
+    private static String getKeyRequest(KeyMatch keyMatch) {
+        return keyMatch == KeyMatch.PREFIX
+                ? "lower(ud." + Data.keyColumn + ") like :searchKey"
+                : "ud." + Data.keyColumn + " ilike :searchKey";
+    }
+
+    private Long count(String from, String zone, IdentityParam identityParam, String key, KeyMatch keyMatch) {
+        return setParameters(currentSession().createQuery("SELECT count(ud) " + from, Long.class), zone, identityParam, key, keyMatch)
+                .uniqueResult();
+    }
+
+    /**
+     * Without value, only the metadata columns are selected: the value, possibly large, is neither read nor transferred.
+     */
+    private String getSelectRequest(boolean withValue) {
+        return withValue ? "select ud" : getMetadataSqlRequest();
+    }
+
+    /**
+     * The metadata columns, in the order read by toDataList. Their names are the same in HQL and SQL.
+     */
+    private static String getMetadataSqlRequest() {
+        return "select ud." + Data.idColumn + ", ud." + Data.keyColumn + ", ud." + Data.zoneColumn + ", ud." + Data.ownerColumn
+                + ", ud." + Data.organizationColumn + ", ud." + Data.lastUpdateDateColumn;
+    }
+
+    private List<Data> toDataList(List<Object[]> rows, boolean withValue) {
+        if (withValue) {
+            return rows.stream().map(row -> (Data) row[0]).toList();
+        }
+        Map<String, Data> page = new LinkedHashMap<>();
+        for (Object[] row : rows) {
+            page.put((String) row[0], new Data((String) row[0], (String) row[1], (String) row[2], null, (String) row[3],
+                    (String) row[4], new ArrayList<>(), new ArrayList<>(), (Date) row[5]));
+        }
+        if (!page.isEmpty()) {
+            for (Object[] reader : currentSession().createQuery("select d." + Data.idColumn + ", r from Data d join d." + Data.readersColumn + " r"
+                    + " where d." + Data.idColumn + " in :ids", Object[].class).setParameterList("ids", page.keySet()).list()) {
+                page.get((String) reader[0]).getDocReaders().add((String) reader[1]);
+            }
+            for (Object[] writer : currentSession().createQuery("select d." + Data.idColumn + ", w from Data d join d." + Data.writersColumn + " w"
+                    + " where d." + Data.idColumn + " in :ids", Object[].class).setParameterList("ids", page.keySet()).list()) {
+                page.get((String) writer[0]).getDocWriters().add((String) writer[1]);
+            }
+        }
+        return new ArrayList<>(page.values());
+    }
+
+    /**
+     * Number of rows PostgreSQL expects the list to match, taken from the plan of an equivalent SQL request.
+     */
+    private Long estimate(String zone, IdentityParam identityParam, String key, KeyMatch keyMatch) {
+        String plan = setSqlParameters(currentSession().createNativeQuery("explain (format json) select 1"
+                        + getFromSqlRequest(identityParam, key, keyMatch), String.class), zone, identityParam, key, keyMatch)
+                .uniqueResult();
+        try {
+            return JSON_READER.readTree(plan).get(0).get("Plan").get("Plan Rows").asLong();
+        } catch (JsonProcessingException | NullPointerException e) {
+            LOGGER.warn("Could not read the estimated total from the plan: " + plan);
+            return null;
+        }
+    }
+
+    /**
+     * SQL version of getFromRequest. The lists of a native request are expanded as they are, an empty one would give
+     * an invalid "in ()": the condition on the organisations is left out when the user has none. The groups are bound
+     * as arrays, which may be empty.
+     */
+    private String getFromSqlRequest(IdentityParam identityParam, String key, KeyMatch keyMatch) {
+        String entities = aclArrays
+                ? "ud." + Data.docEntitiesColumn + " && cast(:entities as text[])"
+                : "(ud." + Data.ownerColumn + "=:userId or " + getGroupsSqlRequest("groups") + ")";
+        String publicGroups = aclArrays
+                ? "ud." + Data.docEntitiesColumn + " && cast(:publicGroups as text[])"
+                : getGroupsSqlRequest("publicGroups");
+        return " from user_data ud"
+                + " where ud." + Data.zoneColumn + "=:zone"
+                + " and (" + (identityParam.organisation.isEmpty() ? ""
+                        : "(ud." + Data.organizationColumn + " in (:organization) and " + entities + ") or ")
+                + publicGroups + ")"
+                + (key != null ? " and " + getKeyRequest(keyMatch) : "");
+    }
+
+    private <T> Query<T> setParameters(Query<T> query, String zone, IdentityParam identityParam, String key, KeyMatch keyMatch) {
+        query = query.setParameter("zone", zone)
+                .setParameter("organization", identityParam.organisation);
+        List<String> groups = getGroups(identityParam);
+        if (aclArrays) {
+            query = query.setParameter("entities", getUserEntities(identityParam, groups))
+                    .setParameter("publicGroups", new String[]{GROUP_PUBLIC});
         } else {
-            throw new ForbiddenException("You are not authorized to delete this resource.");
+            query = query.setParameter("userId", identityParam.userId)
+                    .setParameter("groups", groups.toArray(new String[0]))
+                    .setParameter("publicGroups", new String[]{GROUP_PUBLIC});
         }
+        return key != null ? query.setParameter("searchKey", getSearchKey(key, keyMatch)) : query;
     }
 
-    private String getGroupsRequest(List<String> groups) {
-        return groups.stream()
-                .map(group -> "'" + group.trim() + "' member of ud." + Data.readersColumn + " or " +
-                        "'" + group.trim() + "' member of ud." + Data.writersColumn)
-                .collect(Collectors.joining(" or "));
+    private <T> Query<T> setSqlParameters(Query<T> query, String zone, IdentityParam identityParam, String key, KeyMatch keyMatch) {
+        query = query.setParameter("zone", zone);
+        List<String> groups = getGroups(identityParam);
+        if (!identityParam.organisation.isEmpty()) {
+            query = query.setParameterList("organization", identityParam.organisation);
+            if (aclArrays) {
+                query = query.setParameter("entities", getUserEntities(identityParam, groups));
+            } else {
+                query = query.setParameter("userId", identityParam.userId)
+                        .setParameter("groups", groups.toArray(new String[0]));
+            }
+        }
+        query = query.setParameter("publicGroups", new String[]{GROUP_PUBLIC});
+        return key != null ? query.setParameter("searchKey", getSearchKey(key, keyMatch)) : query;
+    }
+
+    private static List<String> getGroups(IdentityParam identityParam) {
+        return identityParam.groups.stream().map(String::trim).toList();
+    }
+
+    private static String[] getUserEntities(IdentityParam identityParam, List<String> groups) {
+        List<String> entities = new ArrayList<>(groups);
+        entities.add(identityParam.userId);
+        return entities.toArray(new String[0]);
+    }
+
+    private static String getSearchKey(String key, KeyMatch keyMatch) {
+        return keyMatch == KeyMatch.PREFIX ? escapeLike(key.toLowerCase(Locale.ROOT)) + "%" : "%" + key + "%";
+    }
+
+    /**
+     * A wildcard in a prefix would make PostgreSQL scan the whole prefix index, so they are matched literally.
+     */
+    private static String escapeLike(String key) {
+        return key.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    private String getOverlapRequest(String entitiesParameter) {
+        return AclFunctionContributor.ACL_OVERLAP + "(ud." + Data.docEntitiesColumn + ", :" + entitiesParameter + ")";
+    }
+
+    private String getGroupsRequest(String groupsParameter) {
+        return "(exists (select 1 from Data acl join acl." + Data.readersColumn + " reader"
+                + " where acl." + Data.idColumn + "=ud." + Data.idColumn + " and " + AclFunctionContributor.ACL_ANY + "(reader, :" + groupsParameter + "))"
+                + " or exists (select 1 from Data acl join acl." + Data.writersColumn + " writer"
+                + " where acl." + Data.idColumn + "=ud." + Data.idColumn + " and " + AclFunctionContributor.ACL_ANY + "(writer, :" + groupsParameter + ")))";
+    }
+
+    private String getGroupsSqlRequest(String groupsParameter) {
+        return "(exists (select 1 from user_data_readers r where r.data_id=ud." + Data.idColumn + " and r.reader = any(cast(:" + groupsParameter + " as text[])))"
+                + " or exists (select 1 from user_data_writers w where w.data_id=ud." + Data.idColumn + " and w.writer = any(cast(:" + groupsParameter + " as text[]))))";
+    }
+
+    private static List<String> getEntities(String owner, Collection<String> readers, Collection<String> writers) {
+        Set<String> entities = new HashSet<>(readers);
+        entities.addAll(writers);
+        entities.add(owner);
+        return new ArrayList<>(entities);
+    }
+
+    /**
+     * Adds docEntities to a table created before it, and fills it for the documents written before it, from the
+     * readers and writers tables. The column is mapped, so this runs whatever the mode for the inserts and selects to
+     * work on a schema created by a previous version. Its GIN index is only needed, and created, with the arrays.
+     * Does nothing on an up-to-date table.
+     */
+    private static void migrateToAclArrays(SessionFactory factory, boolean withIndex) {
+        try (Session session = factory.openSession()) {
+            Transaction transaction = session.beginTransaction();
+            Long columns = session.createNativeQuery("select count(*) from information_schema.columns"
+                    + " where table_name = 'user_data' and column_name = lower('" + Data.docEntitiesColumn + "')", Long.class)
+                    .uniqueResult();
+            if (columns == 0) {
+                LOGGER.info("Adding the entities column to the documents.");
+                session.createNativeMutationQuery("alter table user_data add column if not exists "
+                        + Data.docEntitiesColumn + " text[]").executeUpdate();
+            }
+            int filled = session.createNativeMutationQuery("update user_data ud set " + Data.docEntitiesColumn + " = array("
+                    + " select r.reader from user_data_readers r where r.data_id = ud." + Data.idColumn
+                    + " union select w.writer from user_data_writers w where w.data_id = ud." + Data.idColumn
+                    + " union select ud." + Data.ownerColumn + ")"
+                    + " where ud." + Data.docEntitiesColumn + " is null").executeUpdate();
+            if (withIndex) {
+                session.createNativeMutationQuery("create index if not exists doc_entities_idx on user_data using gin ("
+                        + Data.docEntitiesColumn + ")").executeUpdate();
+            }
+            transaction.commit();
+            if (filled > 0) {
+                LOGGER.info("Filled the entities of " + filled + " documents.");
+            }
+        }
+    }
+
+    /**
+     * The indexes are built concurrently, without blocking the writes, and so outside of any transaction. A session
+     * advisory lock keeps the replicas starting together from building them twice: the others skip them. An index left
+     * invalid by an interrupted build is dropped and built again.
+     * pg_trgm is a trusted extension since PostgreSQL 13, the owner of the database can create it. Without it, the
+     * substring searches still work but scan every document of the zone.
+     */
+    private static void createKeyIndexes(SessionFactory factory) {
+        try (Session session = factory.openSession()) {
+            session.doWork(connection -> {
+                boolean autoCommit = connection.getAutoCommit();
+                connection.setAutoCommit(true);
+                try (Statement statement = connection.createStatement()) {
+                    if (!tryLock(statement, KEY_INDEXES_LOCK)) {
+                        LOGGER.info("The indexes of the keys are being created by another server, skipping them.");
+                        return;
+                    }
+                    try {
+                        createIndexConcurrently(statement, "doc_key_prefix_idx", "user_data ("
+                                + Data.zoneColumn + ", lower(" + Data.keyColumn + ") text_pattern_ops)");
+                        try {
+                            statement.execute("create extension if not exists pg_trgm");
+                            createIndexConcurrently(statement, "doc_key_trgm_idx", "user_data using gin ("
+                                    + Data.keyColumn + " gin_trgm_ops)");
+                        } catch (SQLException e) {
+                            LOGGER.warn("Could not create the trigram index of the keys, substring searches will not be indexed: "
+                                    + e.getMessage());
+                        }
+                    } finally {
+                        statement.execute("select pg_advisory_unlock(" + KEY_INDEXES_LOCK + ")");
+                    }
+                } finally {
+                    connection.setAutoCommit(autoCommit);
+                }
+            });
+        }
+    }
+
+    private static boolean tryLock(Statement statement, long lock) throws SQLException {
+        try (ResultSet result = statement.executeQuery("select pg_try_advisory_lock(" + lock + ")")) {
+            return result.next() && result.getBoolean(1);
+        }
+    }
+
+    private static void createIndexConcurrently(Statement statement, String name, String definition) throws SQLException {
+        boolean invalid;
+        try (ResultSet result = statement.executeQuery("select 1 from pg_index i join pg_class c on c.oid = i.indexrelid"
+                + " where c.relname = '" + name + "' and not i.indisvalid")) {
+            invalid = result.next();
+        }
+        if (invalid) {
+            LOGGER.warn("Dropping the index " + name + " left invalid by an interrupted build.");
+            statement.execute("drop index concurrently if exists " + name);
+        }
+        statement.execute("create index concurrently if not exists " + name + " on " + definition);
+    }
+
+    private static void migrateToValueJsonb(SessionFactory factory) {
+        try (Session session = factory.openSession()) {
+            Transaction transaction = session.beginTransaction();
+            String type = session.createNativeQuery("select data_type from information_schema.columns"
+                    + " where table_name = 'user_data' and column_name = lower('" + Data.valueColumn + "')", String.class)
+                    .uniqueResult();
+            if ("json".equals(type)) {
+                LOGGER.info("Converting the values of the documents to jsonb.");
+                session.createNativeMutationQuery("alter table user_data alter column " + Data.valueColumn
+                        + " type jsonb using " + Data.valueColumn + "::jsonb").executeUpdate();
+            }
+            transaction.commit();
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,188 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.persistence.server.impl;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * A segment file of the file-log engine: a sequence of records [body length][crc32 of body][body].
+ * Records are appended through the file channel and read through a memory mapping of the segment. The mapping is only
+ * extended once REMAP_THRESHOLD bytes have been appended past it, the records of the tail being read from the channel.
+ */
+class LogSegment implements Closeable {
+    static final int HEADER_LENGTH = 8;
+    /** Offsets in the memory mapping being ints, segments must not be larger. */
+    static final long MAX_SIZE = Integer.MAX_VALUE;
+    private static final long REMAP_THRESHOLD = 8 * 1024 * 1024;
+
+    interface RecordVisitor {
+        void visit(long offset, int length, ByteBuffer body) throws IOException;
+    }
+
+    final long id;
+    final Path path;
+    /** Bytes of the records that are the current version of a document. */
+    final AtomicLong liveBytes = new AtomicLong();
+    /** Bytes of the deletion records, which must be kept while an older segment may hold the deleted document. */
+    final AtomicLong tombstoneBytes = new AtomicLong();
+
+    private final FileChannel channel;
+    private final Object syncLock = new Object();
+    private volatile long size;
+    private long synced;
+    private MappedByteBuffer mapping;
+
+    LogSegment(long id, Path path) throws IOException {
+        this.id = id;
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.size = channel.size();
+        this.synced = size;
+    }
+
+    long size() {
+        return size;
+    }
+
+    static ByteBuffer record(ByteBuffer body) {
+        CRC32 crc = new CRC32();
+        crc.update(body.duplicate());
+        ByteBuffer record = ByteBuffer.allocate(HEADER_LENGTH + body.remaining());
+        record.putInt(body.remaining()).putInt((int) crc.getValue()).put(body).flip();
+        return record;
+    }
+
+    /**
+     * Appends a record and returns its offset. Callers must serialize appends.
+     */
+    long append(ByteBuffer record) throws IOException {
+        long offset = size;
+        long position = offset;
+        while (record.hasRemaining()) {
+            position += channel.write(record, position);
+        }
+        size = position;
+        return offset;
+    }
+
+    /**
+     * Forces the segment to disk up to the given position. Writers calling it concurrently share the same fsync.
+     */
+    void sync(long position) throws IOException {
+        synchronized (syncLock) {
+            if (synced >= position) {
+                return;
+            }
+            long target = size;
+            channel.force(false);
+            synced = target;
+        }
+    }
+
+    /**
+     * Returns the body of the record starting at the given offset.
+     */
+    ByteBuffer read(long offset, int length) throws IOException {
+        ByteBuffer mapped = mapped(offset + length);
+        if (mapped != null) {
+            return mapped.slice((int) offset + HEADER_LENGTH, length - HEADER_LENGTH);
+        }
+        ByteBuffer body = ByteBuffer.allocate(length - HEADER_LENGTH);
+        long position = offset + HEADER_LENGTH;
+        while (body.hasRemaining()) {
+            if (channel.read(body, position + body.position()) < 0) {
+                throw new EOFException("Record at " + offset + " is past the end of " + path);
+            }
+        }
+        return body.flip();
+    }
+
+    /**
+     * Visits the valid records of the segment and returns the offset of the first invalid one (the size if all are valid).
+     */
+    long scan(RecordVisitor visitor) throws IOException {
+        ByteBuffer buffer = map();
+        long offset = 0;
+        while (offset + HEADER_LENGTH <= size) {
+            int length = buffer.getInt((int) offset);
+            int checksum = buffer.getInt((int) offset + 4);
+            if (length <= 0 || offset + HEADER_LENGTH + length > size) {
+                break;
+            }
+            ByteBuffer body = buffer.slice((int) offset + HEADER_LENGTH, length);
+            CRC32 crc = new CRC32();
+            crc.update(body.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            visitor.visit(offset, HEADER_LENGTH + length, body);
+            offset += HEADER_LENGTH + length;
+        }
+        return offset;
+    }
+
+    void truncate(long newSize) throws IOException {
+        channel.truncate(newSize);
+        channel.force(true);
+        synchronized (this) {
+            mapping = null;
+        }
+        size = newSize;
+        synced = newSize;
+    }
+
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Returns the mapping if it covers the given end, remapping the segment when its unmapped tail has grown enough,
+     * or null if the end must be read from the channel.
+     */
+    private synchronized ByteBuffer mapped(long end) throws IOException {
+        if (mapping == null || (mapping.capacity() < end && size - mapping.capacity() >= REMAP_THRESHOLD)) {
+            mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        return mapping.capacity() < end ? null : mapping.duplicate();
+    }
+
+    private synchronized ByteBuffer map() throws IOException {
+        if (mapping == null || mapping.capacity() < size) {
+            mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        return mapping.duplicate();
+    }
+}
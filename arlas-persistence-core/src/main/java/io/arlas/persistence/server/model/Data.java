@@ -19,7 +19,9 @@
 
 package io.arlas.persistence.server.model;
 
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import io.dropwizard.jackson.JsonSnakeCase;
+import io.hypersistence.utils.hibernate.type.array.ListArrayType;
 import io.hypersistence.utils.hibernate.type.json.JsonBinaryType;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
@@ -34,8 +36,11 @@ import java.util.Objects;
 
 
 @Entity
-@Table(name = "user_data", indexes={@Index(columnList="docKey,docZone,docOrganization",name="doc_key_idx_orga")})
+@Table(name = "user_data", indexes={@Index(columnList="docKey,docZone,docOrganization",name="doc_key_idx_orga"),
+        @Index(columnList="docZone,lastUpdateDate,id",name="doc_zone_idx_last_update")})
 @JsonSnakeCase
+// doc_value last: the file engine reads the metadata of a document without its value
+@JsonPropertyOrder({"id", "doc_key", "doc_zone", "last_update_date", "doc_owner", "doc_organization", "doc_writers", "doc_readers", "doc_entities"})
 public class Data {
     public static final String idColumn = "id";
     public static final String keyColumn = "docKey";
@@ -77,7 +82,9 @@ public class Data {
     @Column(name = organizationColumn)
     private String docOrganization;
 
-    @Transient
+    // readers, writers and owner of the document in one indexed array, the readers and writers tables staying the reference
+    @Type(ListArrayType.class)
+    @Column(name = docEntitiesColumn, columnDefinition = "text[]")
     private List<String> docEntities = new ArrayList<>();
 
     @ElementCollection(fetch = FetchType.EAGER)
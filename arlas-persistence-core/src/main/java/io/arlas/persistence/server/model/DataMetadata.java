@@ -0,0 +1,151 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.persistence.server.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import io.dropwizard.jackson.JsonSnakeCase;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Everything we know about a {@link Data} except its value.
+ * Instances are kept in memory by the index of the local engines, so they must not be modified once indexed.
+ */
+@JsonSnakeCase
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class DataMetadata {
+    private String id;
+    private String docKey;
+    private String docZone;
+    private Date lastUpdateDate;
+    private String docOwner;
+    private String docOrganization;
+    private List<String> docWriters = new ArrayList<>();
+    private List<String> docReaders = new ArrayList<>();
+
+    public DataMetadata() {}
+
+    public DataMetadata(DataMetadata metadata) {
+        this.id = metadata.getId();
+        this.docKey = metadata.getDocKey();
+        this.docZone = metadata.getDocZone();
+        this.lastUpdateDate = metadata.getLastUpdateDate();
+        this.docOwner = metadata.getDocOwner();
+        this.docOrganization = metadata.getDocOrganization();
+        this.docWriters = metadata.getDocWriters();
+        this.docReaders = metadata.getDocReaders();
+    }
+
+    public DataMetadata(Data data) {
+        this.id = data.getId();
+        this.docKey = data.getDocKey();
+        this.docZone = data.getDocZone();
+        this.lastUpdateDate = data.getLastUpdateDate();
+        this.docOwner = data.getDocOwner();
+        this.docOrganization = data.getDocOrganization();
+        this.docWriters = data.getDocWriters();
+        this.docReaders = data.getDocReaders();
+    }
+
+    public Data toData(String docValue) {
+        return new Data(id, docKey, docZone, docValue, docOwner, docOrganization,
+                new ArrayList<>(docWriters), new ArrayList<>(docReaders), lastUpdateDate);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getDocKey() {
+        return docKey;
+    }
+
+    public void setDocKey(String docKey) {
+        this.docKey = docKey;
+    }
+
+    public String getDocZone() {
+        return docZone;
+    }
+
+    public void setDocZone(String docZone) {
+        this.docZone = docZone;
+    }
+
+    public Date getLastUpdateDate() {
+        return lastUpdateDate;
+    }
+
+    public void setLastUpdateDate(Date lastUpdateDate) {
+        this.lastUpdateDate = lastUpdateDate;
+    }
+
+    public String getDocOwner() {
+        return docOwner;
+    }
+
+    public void setDocOwner(String docOwner) {
+        this.docOwner = docOwner;
+    }
+
+    public String getDocOrganization() {
+        return docOrganization;
+    }
+
+    public void setDocOrganization(String docOrganization) {
+        this.docOrganization = docOrganization;
+    }
+
+    public List<String> getDocWriters() {
+        return docWriters;
+    }
+
+    public void setDocWriters(List<String> docWriters) {
+        this.docWriters = docWriters;
+    }
+
+    public List<String> getDocReaders() {
+        return docReaders;
+    }
+
+    public void setDocReaders(List<String> docReaders) {
+        this.docReaders = docReaders;
+    }
+
+    @Override
+    public String toString() {
+        return "DataMetadata{" +
+                "id='" + id + '\'' +
+                ", docKey='" + docKey + '\'' +
+                ", docZone='" + docZone + '\'' +
+                ", lastUpdateDate=" + lastUpdateDate +
+                ", docOwner='" + docOwner + '\'' +
+                ", docOrganization='" + docOrganization + '\'' +
+                ", docWriters='" + docWriters + '\'' +
+                ", docReaders='" + docReaders + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.persistence.server.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import com.fasterxml.jackson.annotation.JsonSetter;
+import com.fasterxml.jackson.databind.JsonNode;
+import io.dropwizard.jackson.JsonSnakeCase;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * One document of a bulk create (no id) or update (id and last update date of the version being updated).
+ * The value is the JSON document itself.
+ */
+@JsonSnakeCase
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class DataWrite {
+    private String id;
+    private String key;
+    private List<String> readers = new ArrayList<>();
+    private List<String> writers = new ArrayList<>();
+    private String value;
+    private Long lastUpdate;
+
+    public DataWrite() {}
+
+    public DataWrite(String id, String key, List<String> readers, List<String> writers, String value, Long lastUpdate) {
+        this.id = id;
+        this.key = key;
+        this.readers = readers;
+        this.writers = writers;
+        this.value = value;
+        this.lastUpdate = lastUpdate;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    public List<String> getReaders() {
+        return readers;
+    }
+
+    public void setReaders(List<String> readers) {
+        this.readers = readers;
+    }
+
+    public List<String> getWriters() {
+        return writers;
+    }
+
+    public void setWriters(List<String> writers) {
+        this.writers = writers;
+    }
+
+    @JsonRawValue
+    public String getValue() {
+        return value;
+    }
+
+    @JsonSetter("value")
+    public void setValue(JsonNode value) {
+        this.value = value == null || value.isNull() ? null : value.toString();
+    }
+
+    public Long getLastUpdate() {
+        return lastUpdate;
+    }
+
+    public void setLastUpdate(Long lastUpdate) {
+        this.lastUpdate = lastUpdate;
+    }
+
+    public Set<String> readersSet() {
+        return new HashSet<>(Optional.ofNullable(readers).orElse(new ArrayList<>()));
+    }
+
+    public Set<String> writersSet() {
+        return new HashSet<>(Optional.ofNullable(writers).orElse(new ArrayList<>()));
+    }
+
+    public Date lastUpdateDate() {
+        return new Date(lastUpdate);
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.persistence.server.model;
+
+import java.nio.file.Path;
+
+/**
+ * Metadata of a document of the file engine, with the file holding it and the modification time of that file
+ * when the metadata was read, used to detect changes made by other processes.
+ */
+public class FileEntry extends DataMetadata {
+    private final Path path;
+    private final long lastModified;
+
+    public FileEntry(Data data, Path path, long lastModified) {
+        super(data);
+        this.path = path;
+        this.lastModified = lastModified;
+    }
+
+    public FileEntry(DataMetadata metadata, Path path, long lastModified) {
+        super(metadata);
+        this.path = path;
+        this.lastModified = lastModified;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.persistence.server.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Writes files so that a crash leaves either the previous or the new content, never a partial one:
+ * the content goes to a hidden temporary file of the same directory which is then atomically moved to its target.
+ * Depending on the {@link Durability}, the file and its directory are forced to disk before returning.
+ * The temporary file is always forced by its own writer, before the move, since each file needs its own fsync; with
+ * {@link Durability#BATCH} only the fsync of the directory, which makes the move durable, is shared between writers.
+ */
+public class AtomicFileWriter {
+    private static final String TEMP_PREFIX = ".";
+    private static final String TEMP_SUFFIX = ".tmp";
+    // Windows can not open a directory, a move is then as durable as it can be
+    private static final boolean DIRECTORY_SYNC_SUPPORTED = !System.getProperty("os.name").toLowerCase(Locale.ROOT).startsWith("windows");
+
+    private final Durability durability;
+    // group commit of the directories (not of the files): a writer waits for a sync started after its request
+    private final Set<Path> pendingDirectories = new HashSet<>();
+    private long requested;
+    private long completed;
+    private boolean syncing;
+
+    public AtomicFileWriter(Durability durability) {
+        this.durability = durability;
+    }
+
+    public static boolean isTemporary(Path file) {
+        String name = file.getFileName().toString();
+        return name.startsWith(TEMP_PREFIX) && name.endsWith(TEMP_SUFFIX);
+    }
+
+    public interface Content {
+        void writeTo(OutputStream output) throws IOException;
+    }
+
+    public void write(Path target, byte[] content) throws IOException {
+        write(target, output -> output.write(content));
+    }
+
+    public void write(Path target, Content content) throws IOException {
+        Path temp = target.resolveSibling(TEMP_PREFIX + target.getFileName() + "." + UUID.randomUUID() + TEMP_SUFFIX);
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                OutputStream output = Channels.newOutputStream(channel);
+                content.writeTo(output);
+                output.flush();
+                if (durability != Durability.NONE) {
+                    channel.force(false);
+                }
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        syncDirectory(target.getParent());
+    }
+
+    public void delete(Path target) throws IOException {
+        Files.delete(target);
+        syncDirectory(target.getParent());
+    }
+
+    private void syncDirectory(Path directory) throws IOException {
+        switch (durability) {
+            case SYNC -> forceDirectory(directory);
+            case BATCH -> groupSync(directory);
+            case NONE -> {}
+        }
+    }
+
+    private void groupSync(Path directory) throws IOException {
+        long ticket;
+        synchronized (this) {
+            pendingDirectories.add(directory);
+            ticket = ++requested;
+            while (syncing && completed < ticket) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while syncing " + directory);
+                }
+            }
+            if (completed >= ticket) {
+                return;
+            }
+            syncing = true;
+        }
+        Set<Path> directories;
+        long target;
+        synchronized (this) {
+            directories = new HashSet<>(pendingDirectories);
+            pendingDirectories.clear();
+            target = requested;
+        }
+        IOException failure = null;
+        for (Path pending : directories) {
+            try {
+                forceDirectory(pending);
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        synchronized (this) {
+            syncing = false;
+            if (failure == null) {
+                completed = target;
+            } else {
+                // let the next writer retry the directories
+                pendingDirectories.addAll(directories);
+            }
+            notifyAll();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static void forceDirectory(Path directory) throws IOException {
+        if (!DIRECTORY_SYNC_SUPPORTED) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+}
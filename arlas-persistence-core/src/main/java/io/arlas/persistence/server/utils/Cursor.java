@@ -0,0 +1,85 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.persistence.server.utils;
+
+import io.arlas.persistence.server.exceptions.BadRequestException;
+import io.arlas.persistence.server.model.DataMetadata;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * Position of a client in a list sorted by (last update date, id): the list goes on with the documents strictly after
+ * this one in the requested order. Clients only see it as an opaque string, {@link #START} asking for the first page.
+ */
+public class Cursor {
+    public static final String START = "*";
+
+    private final Date lastUpdateDate;
+    private final String id;
+
+    private Cursor(Date lastUpdateDate, String id) {
+        this.lastUpdateDate = lastUpdateDate;
+        this.id = id;
+    }
+
+    public static Cursor start() {
+        return new Cursor(null, null);
+    }
+
+    public static Cursor after(DataMetadata data) {
+        return new Cursor(data.getLastUpdateDate(), data.getId());
+    }
+
+    public static Cursor fromString(String cursor) throws BadRequestException {
+        if (cursor == null || cursor.isBlank() || START.equals(cursor)) {
+            return start();
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = decoded.indexOf(':');
+            return new Cursor(new Date(Long.parseLong(decoded.substring(0, separator))), decoded.substring(separator + 1));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new BadRequestException("Invalid cursor: " + cursor);
+        }
+    }
+
+    public boolean isStart() {
+        return id == null;
+    }
+
+    public Date getLastUpdateDate() {
+        return lastUpdateDate;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public String toString() {
+        if (isStart()) {
+            return START;
+        }
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((lastUpdateDate.getTime() + ":" + id).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.arlas.persistence.server.utils;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.arlas.persistence.server.model.Data;
+import io.arlas.persistence.server.model.DataMetadata;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Reads and writes the JSON files of the file engine.
+ * Files are plain serialized {@link Data} whose doc_value is written last, so that the metadata of a document
+ * can be read from the beginning of its file without reading or decoding its value.
+ * Files written before doc_value was moved last are still read, the value is then skipped without being decoded.
+ */
+public class DataFileCodec {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    // readers and writers are immutable and thread-safe, building them once saves a lookup on every document
+    private static final ObjectReader dataReader = objectMapper.readerFor(Data.class);
+    private static final ObjectReader metadataReader = objectMapper.readerFor(DataMetadata.class);
+    private static final ObjectWriter dataWriter = objectMapper.writerFor(Data.class);
+    private static final String VALUE_FIELD = "doc_value";
+    private static final List<String> METADATA_FIELDS = List.of("id", "doc_key", "doc_zone", "last_update_date",
+            "doc_owner", "doc_organization", "doc_writers", "doc_readers");
+
+    public static Data read(Path path) throws IOException {
+        try (InputStream inputStream = Files.newInputStream(path)) {
+            return dataReader.readValue(inputStream);
+        }
+    }
+
+    public static DataMetadata readMetadata(Path path) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(Files.newInputStream(path))) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Not a JSON object");
+            }
+            ObjectNode metadata = objectMapper.createObjectNode();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if (VALUE_FIELD.equals(field)) {
+                    if (METADATA_FIELDS.stream().allMatch(metadata::has)) {
+                        break;
+                    }
+                    parser.skipChildren();
+                } else {
+                    metadata.set(field, objectMapper.readTree(parser));
+                }
+            }
+            return metadataReader.readValue(metadata);
+        }
+    }
+
+    public static byte[] toBytes(Data data) throws IOException {
+        return dataWriter.writeValueAsBytes(data);
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.persistence.server.utils;
+
+import java.util.Locale;
+
+/**
+ * When the local engines force their writes to disk.
+ * SYNC: every write is forced before being acknowledged.
+ * BATCH: writes are forced before being acknowledged, as with SYNC, but concurrent writers share the fsync calls that
+ * can be shared (group commit): with the 'file' engine each document file is still forced on its own and only the
+ * fsync of the directories recording the renames is shared; with the 'file-log' engine, which appends every record to
+ * the same segment, BATCH behaves as SYNC since the fsync of the segment is always shared.
+ * NONE: flushing is left to the operating system, a crash of the host may lose the last writes.
+ */
+public enum Durability {
+    SYNC, BATCH, NONE;
+
+    public static Durability fromString(String durability) {
+        return valueOf(durability.toUpperCase(Locale.ROOT));
+    }
+}
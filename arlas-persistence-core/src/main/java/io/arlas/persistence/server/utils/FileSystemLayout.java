@@ -0,0 +1,136 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.arlas.persistence.server.utils;
+
+import io.arlas.persistence.server.model.Data;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * How the file engine names its documents in the local folder.
+ * FLAT: one directory, files named zone_org_key_owner_id.
+ * SHARDED: files named id.json in two levels of sub-directories derived from a hash of the id.
+ * MIXED: reads both layouts and writes the sharded one, to be used while migrating a flat folder.
+ */
+public enum FileSystemLayout {
+    FLAT, SHARDED, MIXED;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileSystemLayout.class);
+    private static final String EXTENSION = ".json";
+
+    public static FileSystemLayout fromString(String layout) {
+        return valueOf(layout.toUpperCase(Locale.ROOT));
+    }
+
+    public Path pathOf(Path root, Data data) {
+        if (this == FLAT) {
+            // zone_org_key_userid_id
+            return root.resolve(String.join("_",
+                    data.getDocZone(),
+                    data.getDocOrganization(),
+                    data.getDocKey(),
+                    data.getDocOwner(),
+                    data.getId()));
+        } else {
+            return shardedPath(root, data.getId());
+        }
+    }
+
+    public boolean isDocument(Path root, Path file) {
+        if (file.getFileName().toString().startsWith(".")) {
+            // temporary files of the writes and files of the engine, such as its catalog
+            return false;
+        }
+        boolean flat = file.getParent().equals(root) && isFlatName(file.getFileName().toString());
+        boolean sharded = root.relativize(file).getNameCount() == 3 && file.getFileName().toString().endsWith(EXTENSION);
+        return switch (this) {
+            case FLAT -> flat;
+            case SHARDED -> sharded;
+            case MIXED -> flat || sharded;
+        };
+    }
+
+    /**
+     * Returns the id of the document held by a file of the folder, whether it is named after the flat or the sharded layout.
+     */
+    public static String idOf(Path root, Path file) {
+        String name = file.getFileName().toString();
+        if (file.getParent().equals(root)) {
+            return name.substring(name.lastIndexOf('_') + 1);
+        } else {
+            return name.substring(0, name.length() - EXTENSION.length());
+        }
+    }
+
+    /**
+     * Moves the documents of a flat folder to the sharded layout. The id is the last part of a flat file name.
+     * A document already having a sharded copy, left by an interrupted migration or written in MIXED layout, keeps
+     * the copy with the latest last_update_date.
+     */
+    public static void migrate(Path root) throws IOException {
+        List<Path> flatFiles;
+        try (Stream<Path> paths = Files.list(root)) {
+            flatFiles = paths.filter(Files::isRegularFile).filter(path -> isFlatName(path.getFileName().toString())).toList();
+        }
+        for (Path file : flatFiles) {
+            Path target = shardedPath(root, idOf(root, file));
+            Files.createDirectories(target.getParent());
+            if (!Files.exists(target)) {
+                Files.move(file, target, StandardCopyOption.ATOMIC_MOVE);
+            } else if (isNewer(file, target)) {
+                LOGGER.warn("Replacing " + target + " by the more recent " + file);
+                Files.move(file, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                LOGGER.warn("Removing " + file + ", already migrated to " + target);
+                Files.delete(file);
+            }
+        }
+        LOGGER.info("Migrated " + flatFiles.size() + " documents of " + root + " to the sharded layout");
+    }
+
+    private static boolean isNewer(Path file, Path than) throws IOException {
+        return DataFileCodec.readMetadata(file).getLastUpdateDate().after(DataFileCodec.readMetadata(than).getLastUpdateDate());
+    }
+
+    /**
+     * Whether a file name follows the flat naming zone_org_key_owner_id, the key possibly holding more underscores.
+     */
+    private static boolean isFlatName(String name) {
+        return !name.startsWith(".") && !name.endsWith(EXTENSION) && name.chars().filter(c -> c == '_').count() >= 4;
+    }
+
+    private static Path shardedPath(Path root, String id) {
+        CRC32 crc = new CRC32();
+        crc.update(id.getBytes(StandardCharsets.UTF_8));
+        long hash = crc.getValue();
+        return root.resolve(String.format("%02x", (hash >> 8) & 0xff))
+                .resolve(String.format("%02x", hash & 0xff))
+                .resolve(id + EXTENSION);
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.persistence.server.utils;
+
+import java.util.Locale;
+
+/**
+ * How the key filter of a list matches the keys of the documents, ignoring case.
+ * CONTAINS: the key of the document contains the filter.
+ * PREFIX: the key of the document starts with the filter, which the engines can serve from an ordered index.
+ */
+public enum KeyMatch {
+    CONTAINS, PREFIX;
+
+    public static KeyMatch fromString(String keyMatch) {
+        return valueOf(keyMatch.toUpperCase(Locale.ROOT));
+    }
+}
@@ -17,16 +17,20 @@
  * under the License.
  */
 
-package io.arlas.persistence.server.model;
+package io.arlas.persistence.server.utils;
 
-import java.io.File;
+import java.util.Locale;
 
-public class FileWrapper {
-    public File file;
-    public Data data;
+/**
+ * How the total of a list is computed.
+ * EXACT: all the matching documents are counted.
+ * ESTIMATE: the engine may return an approximation when counting is expensive (the planner estimate of PostgreSQL).
+ * NONE: no total is returned.
+ */
+public enum TotalMode {
+    EXACT, ESTIMATE, NONE;
 
-    public FileWrapper(File f, Data d) {
-        file = f;
-        data = d;
+    public static TotalMode fromString(String total) {
+        return valueOf(total.toUpperCase(Locale.ROOT));
     }
 }
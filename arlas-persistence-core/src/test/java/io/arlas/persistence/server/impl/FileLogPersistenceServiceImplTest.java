@@ -0,0 +1,179 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.persistence.server.impl;
+
+import io.arlas.commons.exceptions.NotFoundException;
+import io.arlas.filter.core.IdentityParam;
+import io.arlas.persistence.server.model.Data;
+import io.arlas.persistence.server.utils.Durability;
+import io.arlas.persistence.server.utils.KeyMatch;
+import io.arlas.persistence.server.utils.SortOrder;
+import io.arlas.persistence.server.utils.TotalMode;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Recovery of the segments of the file-log engine after a crash, and their compaction.
+ */
+public class FileLogPersistenceServiceImplTest {
+    private static final IdentityParam USER = new IdentityParam("user", List.of("company"), List.of("group/all"), false);
+    private static final String ZONE = "pref";
+
+    private Path folder;
+    private FileLogPersistenceServiceImpl service;
+
+    @Before
+    public void setUp() throws Exception {
+        folder = Files.createTempDirectory("file-log");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (service != null) {
+            service.stop();
+        }
+        try (Stream<Path> paths = Files.walk(folder)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    public void testTornTailIsTruncated() throws Exception {
+        service = open(1 << 20, 0);
+        List<Data> documents = createAll(5);
+        service.stop();
+        Path segment = lastSegment();
+        long size = Files.size(segment);
+        // a record whose header announces more bytes than were written
+        Files.write(segment, new byte[]{0, 0, 0, 50, 1, 2, 3, 4, 5}, StandardOpenOption.APPEND);
+
+        service = open(1 << 20, 0);
+        Assert.assertEquals(size, Files.size(segment));
+        assertValues(documents);
+        Data created = service.create(ZONE, "after", USER, new HashSet<>(), new HashSet<>(), "{\"after\":true}");
+        service.stop();
+
+        service = open(1 << 20, 0);
+        Assert.assertEquals("{\"after\":true}", service.getById(created.getId(), USER).getDocValue());
+        Assert.assertEquals(6L, (long) list().getLeft());
+    }
+
+    @Test
+    public void testCorruptedRecordIsDropped() throws Exception {
+        service = open(1 << 20, 0);
+        Data document = service.create(ZONE, "key", USER, new HashSet<>(), new HashSet<>(), "{\"version\":1}");
+        Data updated = service.update(document.getId(), null, USER, new HashSet<>(), new HashSet<>(), "{\"version\":2}", document.getLastUpdateDate());
+        service.stop();
+        Path segment = lastSegment();
+        // flip the last byte of the value of the update, its checksum no longer matches
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer last = ByteBuffer.allocate(1);
+            channel.read(last, channel.size() - 2);
+            last.put(0, (byte) (last.get(0) ^ 0xff)).rewind();
+            channel.write(last, channel.size() - 2);
+        }
+
+        service = open(1 << 20, 0);
+        Data recovered = service.getById(document.getId(), USER);
+        Assert.assertEquals("{\"version\":1}", recovered.getDocValue());
+        Assert.assertNotEquals(updated.getLastUpdateDate(), recovered.getLastUpdateDate());
+    }
+
+    @Test
+    public void testCompactionKeepsLastVersions() throws Exception {
+        // small segments so that the updates spread over many of them
+        service = open(600, 50);
+        List<Data> documents = createAll(10);
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < documents.size(); i++) {
+                Data document = documents.get(i);
+                documents.set(i, service.update(document.getId(), null, USER, new HashSet<>(), new HashSet<>(),
+                        "{\"value\":" + (i * 100 + round) + "}", document.getLastUpdateDate()));
+            }
+        }
+        List<Data> deleted = documents.subList(0, 3);
+        for (Data document : deleted) {
+            service.deleteById(document.getId(), USER);
+        }
+        List<Data> kept = documents.subList(3, documents.size());
+        long segmentsBefore = segments().size();
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (segments().size() > segmentsBefore / 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        Assert.assertTrue(segments().size() <= segmentsBefore / 2);
+        assertValues(kept);
+        service.stop();
+
+        // the deletions must survive the compaction of the segments holding their tombstones
+        service = open(600, 0);
+        assertValues(kept);
+        Assert.assertEquals((long) kept.size(), (long) list().getLeft());
+        for (Data document : deleted) {
+            Assert.assertThrows(NotFoundException.class, () -> service.getById(document.getId(), USER));
+        }
+    }
+
+    private FileLogPersistenceServiceImpl open(long segmentSize, long compactionIntervalMillis) throws Exception {
+        return new FileLogPersistenceServiceImpl(folder.toString(), Durability.SYNC, segmentSize, 0.5, compactionIntervalMillis);
+    }
+
+    private List<Data> createAll(int count) throws Exception {
+        List<Data> documents = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            documents.add(service.create(ZONE, "key" + i, USER, new HashSet<>(), new HashSet<>(), "{\"value\":" + i + "}"));
+        }
+        return documents;
+    }
+
+    private void assertValues(List<Data> documents) throws Exception {
+        for (Data document : documents) {
+            Assert.assertEquals(document.getDocValue(), service.getById(document.getId(), USER).getDocValue());
+        }
+    }
+
+    private org.apache.commons.lang3.tuple.Pair<Long, List<Data>> list() throws Exception {
+        return service.list(ZONE, USER, 100, 1, SortOrder.DESC, null, KeyMatch.CONTAINS, TotalMode.EXACT, true);
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> paths = Files.list(folder)) {
+            return paths.filter(path -> path.getFileName().toString().endsWith(".log")).sorted().toList();
+        }
+    }
+
+    private Path lastSegment() throws IOException {
+        List<Path> segments = segments();
+        return segments.get(segments.size() - 1);
+    }
+}
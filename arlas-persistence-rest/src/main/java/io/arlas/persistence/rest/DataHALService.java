@@ -24,7 +24,10 @@ import io.arlas.persistence.model.DataResource;
 import io.arlas.persistence.model.DataWithLinks;
 import io.arlas.persistence.model.Link;
 import io.arlas.persistence.server.model.Data;
+import io.arlas.persistence.server.model.DataMetadata;
+import io.arlas.persistence.server.utils.Cursor;
 import io.arlas.persistence.server.utils.SortOrder;
+import io.arlas.persistence.server.utils.TotalMode;
 import jakarta.ws.rs.core.UriInfo;
 import org.apache.commons.lang3.tuple.Pair;
 
@@ -41,13 +44,36 @@ public class DataHALService {
         this.baseUri = baseUri;
     }
 
-    public DataResource dataListToResource(Pair<Long, List<Data>> dataList, UriInfo uriInfo, Integer page, Integer size, SortOrder order, IdentityParam identityParam) {
+    public DataResource dataListToResource(List<Data> dataList, UriInfo uriInfo, IdentityParam identityParam) {
+        DataResource dataResource = new DataResource();
+        dataResource.count = dataList.size();
+        dataResource.data = dataList.stream().map(d -> new DataWithLinks(d,identityParam)).collect(Collectors.toList());
+        dataResource.data.replaceAll(u -> dataWithLinks(u, uriInfo,identityParam));
+        return dataResource;
+    }
+
+    public DataResource dataListToResource(Pair<Long, List<Data>> dataList, UriInfo uriInfo, Integer page, Integer size, SortOrder order, TotalMode total, IdentityParam identityParam) {
+        DataResource dataResource = new DataResource();
+        dataResource.total = dataList.getLeft();
+        dataResource.count = dataList.getRight().size();
+        dataResource.data = dataList.getRight().stream().map(d -> new DataWithLinks(d,identityParam)).collect(Collectors.toList());
+        dataResource.data.replaceAll(u -> dataWithLinks(u, uriInfo,identityParam));
+        dataResource.links = pageLinks(uriInfo, page, size, total == TotalMode.EXACT ? dataResource.total : null, dataResource.data.size());
+        return dataResource;
+    }
+
+    /**
+     * Links of a page fetched with a cursor: 'next' carries the cursor of the last returned document and is only set
+     * when the page is full.
+     */
+    public DataResource dataListToResource(Pair<Long, List<Data>> dataList, UriInfo uriInfo, Integer size, IdentityParam identityParam) {
         DataResource dataResource = new DataResource();
         dataResource.total = dataList.getLeft();
         dataResource.count = dataList.getRight().size();
         dataResource.data = dataList.getRight().stream().map(d -> new DataWithLinks(d,identityParam)).collect(Collectors.toList());
         dataResource.data.replaceAll(u -> dataWithLinks(u, uriInfo,identityParam));
-        dataResource.links = pageLinks(uriInfo, page, size, dataResource.total, dataResource.data.size());
+        Cursor next = dataList.getRight().size() < size ? null : Cursor.after(new DataMetadata(dataList.getRight().get(size - 1)));
+        dataResource.links = cursorLinks(uriInfo, size, next);
         return dataResource;
     }
 
@@ -58,6 +84,10 @@ public class DataHALService {
                 .replaceQueryParam("size", null)
                 .replaceQueryParam("type", null)
                 .replaceQueryParam("order", null)
+                .replaceQueryParam("cursor", null)
+                .replaceQueryParam("total", null)
+                .replaceQueryParam("with_value", null)
+                .replaceQueryParam("key_match", null)
                 .toTemplate()
                 .replace(uriInfo.getAbsolutePath().toString(), "");
 
@@ -68,6 +98,9 @@ public class DataHALService {
         return  dataWithLinks.withLinks(links);
     }
 
+    /**
+     * Without an exact total, there is a 'next' link as long as the pages are full, and no 'last' link.
+     */
     private Map<String, Link> pageLinks(UriInfo uriInfo, Integer page, Integer size, Long total, Integer count) {
         Map<String, Link> links = new HashMap<>();
         links.put("self", new Link("self", getUri(uriInfo, size, page), "GET"));
@@ -75,13 +108,33 @@ public class DataHALService {
             links.put("first", new Link("first", getUri(uriInfo, size, 1), "GET"));
         if (page > 1)
             links.put("prev", new Link("prev", getUri(uriInfo, size, page-1), "GET"));
-        if ((page-1)*size + count < total)
+        if (total == null ? count.equals(size) : (page-1)*size + count < total)
             links.put("next", new Link("next", getUri(uriInfo, size, page+1), "GET"));
-        if ((page-1)*size + count != total)
+        if (total != null && (page-1)*size + count != total)
             links.put("last", new Link("last", getUri(uriInfo, size, Double.valueOf(Math.ceil((double)total/(double)size)).intValue()), "GET"));
         return links;
     }
 
+    private Map<String, Link> cursorLinks(UriInfo uriInfo, Integer size, Cursor next) {
+        Map<String, Link> links = new HashMap<>();
+        links.put("self", new Link("self", getAbsoluteUri(uriInfo) + uriInfo.getRequestUriBuilder()
+                .toTemplate()
+                .replace(uriInfo.getAbsolutePath().toString(), ""), "GET"));
+        links.put("first", new Link("first", getUri(uriInfo, size, Cursor.start()), "GET"));
+        if (next != null)
+            links.put("next", new Link("next", getUri(uriInfo, size, next), "GET"));
+        return links;
+    }
+
+    private String getUri(UriInfo uriInfo, Integer size, Cursor cursor) {
+        return  getAbsoluteUri(uriInfo) + uriInfo.getRequestUriBuilder()
+                .replaceQueryParam("size", size)
+                .replaceQueryParam("page", null)
+                .replaceQueryParam("cursor", cursor.toString())
+                .toTemplate()
+                .replace(uriInfo.getAbsolutePath().toString(), "");
+    }
+
     private String getUri(UriInfo uriInfo, Integer size, Integer page) {
         return  getAbsoluteUri(uriInfo) + uriInfo.getRequestUriBuilder()
                 .replaceQueryParam("size", size)
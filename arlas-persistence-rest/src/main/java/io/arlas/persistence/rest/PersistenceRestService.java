@@ -32,7 +32,13 @@ import io.arlas.persistence.model.Exists;
 import io.arlas.persistence.server.app.ArlasPersistenceServerConfiguration;
 import io.arlas.persistence.server.app.Documentation;
 import io.arlas.persistence.server.core.PersistenceService;
+import io.arlas.persistence.server.exceptions.BadRequestException;
+import io.arlas.persistence.server.exceptions.ServiceUnavailableException;
+import io.arlas.persistence.server.model.DataWrite;
+import io.arlas.persistence.server.utils.Cursor;
+import io.arlas.persistence.server.utils.KeyMatch;
 import io.arlas.persistence.server.utils.SortOrder;
+import io.arlas.persistence.server.utils.TotalMode;
 import io.dropwizard.hibernate.UnitOfWork;
 import io.swagger.v3.oas.annotations.ExternalDocumentation;
 import io.swagger.v3.oas.annotations.OpenAPIDefinition;
@@ -50,11 +56,18 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotNull;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.container.Suspended;
 import jakarta.ws.rs.core.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
 
 @Path("/persist")
 @Tag(name="persist", description="Persistence API")
@@ -80,11 +93,16 @@ public class PersistenceRestService {
     private final PersistenceService persistenceService;
     private final DataHALService halService;
     private final ArlasAuthConfiguration configuration;
+    private final Executor responses;
 
-    public PersistenceRestService(PersistenceService persistenceService, ArlasPersistenceServerConfiguration configuration) {
+    /**
+     * @param responses bounded executor building and writing the responses of the requests completed asynchronously
+     */
+    public PersistenceRestService(PersistenceService persistenceService, ArlasPersistenceServerConfiguration configuration, Executor responses) {
         this.persistenceService = persistenceService;
         this.halService = new DataHALService(configuration.arlasBaseUri);
         this.configuration = configuration.arlasAuthConfiguration;
+        this.responses = responses;
     }
 
     @Timed
@@ -105,8 +123,9 @@ public class PersistenceRestService {
                     content = @Content(schema = @Schema(implementation = Error.class)))
     })
 
-    @UnitOfWork
-    public Response list(
+    @ReplicaUnitOfWork
+    public void list(
+            @Suspended AsyncResponse asyncResponse,
             @Context UriInfo uriInfo,
             @Context HttpHeaders headers,
 
@@ -133,6 +152,22 @@ public class PersistenceRestService {
                     schema = @Schema(defaultValue = "DESC"))
             @QueryParam(value = "order") SortOrder order,
 
+            @Parameter(name = "cursor",
+                    description = Documentation.CURSOR,
+                    schema = @Schema(type = "string"), required = false)
+            @QueryParam(value = "cursor") String cursor,
+
+            @Parameter(name = "total",
+                    description = Documentation.TOTAL,
+                    schema = @Schema(defaultValue = "EXACT"))
+            @QueryParam(value = "total") TotalMode total,
+
+            @Parameter(name = "with_value",
+                    description = Documentation.WITH_VALUE,
+                    schema = @Schema(defaultValue = "true"))
+            @DefaultValue("true")
+            @QueryParam(value = "with_value") Boolean withValue,
+
             // --------------------------------------------------------
             // ----------------------- FORM -----------------------
             // --------------------------------------------------------
@@ -147,12 +182,26 @@ public class PersistenceRestService {
             @Parameter(name = "key",
                     description = Documentation.SEARCH_KEY,
                     schema = @Schema(type = "string"), required = false)
-            @QueryParam(value = "key") String key
+            @QueryParam(value = "key") String key,
+
+            @Parameter(name = "key_match",
+                    description = Documentation.KEY_MATCH,
+                    schema = @Schema(defaultValue = "CONTAINS"))
+            @QueryParam(value = "key_match") KeyMatch keyMatch
     ) throws ArlasException {
         IdentityParam identityparam = getIdentityParam(headers);
-        return ResponseFormatter.getResultResponse(
-                halService.dataListToResource(
-                        persistenceService.list(zone, identityparam, size, page, order, key), uriInfo, page, size, order, identityparam));
+        total = Optional.ofNullable(total).orElse(TotalMode.EXACT);
+        keyMatch = Optional.ofNullable(keyMatch).orElse(KeyMatch.CONTAINS);
+        if (cursor != null) {
+            resume(asyncResponse,
+                    persistenceService.listAfterAsync(zone, identityparam, size, Cursor.fromString(cursor), order, key, keyMatch, total, withValue),
+                    dataList -> ResponseFormatter.getResultResponse(halService.dataListToResource(dataList, uriInfo, size, identityparam)));
+            return;
+        }
+        TotalMode totalMode = total;
+        resume(asyncResponse,
+                persistenceService.listAsync(zone, identityparam, size, page, order, key, keyMatch, total, withValue),
+                dataList -> ResponseFormatter.getResultResponse(halService.dataListToResource(dataList, uriInfo, page, size, order, totalMode, identityparam)));
     }
 
     @Timed
@@ -173,8 +222,9 @@ public class PersistenceRestService {
                     content = @Content(schema = @Schema(implementation = Error.class)))
     })
 
-    @UnitOfWork
-    public Response getById(
+    @ReplicaUnitOfWork
+    public void getById(
+            @Suspended AsyncResponse asyncResponse,
             @Context UriInfo uriInfo,
             @Context HttpHeaders headers,
 
@@ -190,10 +240,10 @@ public class PersistenceRestService {
                     description = Documentation.FORM_PRETTY,
                     schema = @Schema(defaultValue = "false"))
             @QueryParam(value = "pretty") Boolean pretty
-    ) throws ArlasException {
+    ) {
         IdentityParam identityparam = getIdentityParam(headers);
-        DataWithLinks dataWithLinks = new DataWithLinks(persistenceService.getById(id, identityparam), identityparam);
-        return ResponseFormatter.getResultResponse(halService.dataWithLinks(dataWithLinks, uriInfo, identityparam));
+        resume(asyncResponse, persistenceService.getByIdAsync(id, identityparam),
+                data -> ResponseFormatter.getResultResponse(halService.dataWithLinks(new DataWithLinks(data, identityparam), uriInfo, identityparam)));
     }
 
     @Timed
@@ -212,8 +262,9 @@ public class PersistenceRestService {
                     content = @Content(schema = @Schema(implementation = Error.class)))
     })
 
-    @UnitOfWork
-    public Response existsById(
+    @ReplicaUnitOfWork
+    public void existsById(
+            @Suspended AsyncResponse asyncResponse,
             @Context UriInfo uriInfo,
             @Context HttpHeaders headers,
 
@@ -229,14 +280,17 @@ public class PersistenceRestService {
                     description = Documentation.FORM_PRETTY,
                     schema = @Schema(defaultValue = "false"))
             @QueryParam(value = "pretty") Boolean pretty
-    ) throws ArlasException {
+    ) {
         IdentityParam identityparam = getIdentityParam(headers);
-        try {
-            persistenceService.getById(id, identityparam);
-            return Response.ok(new Exists(true)).build();
-        } catch (NotFoundException e) {
-            return Response.ok(new Exists(false)).build();
-        }
+        resume(asyncResponse, persistenceService.getByIdAsync(id, identityparam)
+                        .thenApply(data -> true)
+                        .exceptionally(e -> {
+                            if (unwrap(e) instanceof NotFoundException) {
+                                return false;
+                            }
+                            throw new CompletionException(unwrap(e));
+                        }),
+                exists -> Response.ok(new Exists(exists)).build());
     }
 
     @Timed
@@ -256,7 +310,7 @@ public class PersistenceRestService {
             @ApiResponse(responseCode = "500", description = "Arlas Persistence Error.",
                     content = @Content(schema = @Schema(implementation = Error.class)))})
 
-    @UnitOfWork
+    @ReplicaUnitOfWork
     public Response getGroupsByZone(
             @Context UriInfo uriInfo,
             @Context HttpHeaders headers,
@@ -297,7 +351,8 @@ public class PersistenceRestService {
     })
 
     @UnitOfWork
-    public Response create(
+    public void create(
+            @Suspended AsyncResponse asyncResponse,
             @Context UriInfo uriInfo,
             @Context HttpHeaders headers,
 
@@ -332,16 +387,15 @@ public class PersistenceRestService {
                     description = Documentation.FORM_PRETTY,
                     schema = @Schema(defaultValue = "false"))
             @QueryParam(value = "pretty") Boolean pretty
-    ) throws ArlasException {
+    ) {
         IdentityParam identityparam = getIdentityParam(headers);
         Set<String> readersSet = Optional.ofNullable(readers).map(r -> new HashSet<>(readers)).orElse(new HashSet<>());
         Set<String> writersSet = Optional.ofNullable(writers).map(r -> new HashSet<>(writers)).orElse(new HashSet<>());
-        DataWithLinks dataWithLinks = new DataWithLinks(
-                persistenceService.create(zone, key, identityparam, readersSet, writersSet, value), identityparam);
-        return Response.created(uriInfo.getRequestUriBuilder().build())
-                .entity(halService.dataWithLinks(dataWithLinks, uriInfo, identityparam))
-                .type("application/json")
-                .build();
+        resume(asyncResponse, persistenceService.createAsync(zone, key, identityparam, readersSet, writersSet, value),
+                data -> Response.created(uriInfo.getRequestUriBuilder().build())
+                        .entity(halService.dataWithLinks(new DataWithLinks(data, identityparam), uriInfo, identityparam))
+                        .type("application/json")
+                        .build());
     }
 
     @Timed
@@ -363,7 +417,8 @@ public class PersistenceRestService {
     })
 
     @UnitOfWork
-    public Response update(
+    public void update(
+            @Suspended AsyncResponse asyncResponse,
             @Context UriInfo uriInfo,
             @Context HttpHeaders headers,
 
@@ -401,15 +456,120 @@ public class PersistenceRestService {
             @Parameter(name = "pretty", description = Documentation.FORM_PRETTY,
                     schema = @Schema(defaultValue = "false"))
             @QueryParam(value = "pretty") Boolean pretty
-    ) throws ArlasException {
+    ) {
         IdentityParam identityparam = getIdentityParam(headers);
         Set<String> readersSet = Optional.ofNullable(readers).map(r-> new HashSet<>(readers)).orElse(new HashSet<>());
         Set<String> writersSet = Optional.ofNullable(writers).map(r-> new HashSet<>(writers)).orElse(new HashSet<>());
         Date lastUpdateDate = new Date(lastUpdate);
-        DataWithLinks dataWithLinks = new DataWithLinks(
-                persistenceService.update(id, key, identityparam, readersSet, writersSet, value, lastUpdateDate), identityparam);
+        resume(asyncResponse, persistenceService.updateAsync(id, key, identityparam, readersSet, writersSet, value, lastUpdateDate),
+                data -> Response.created(uriInfo.getRequestUriBuilder().build())
+                        .entity(halService.dataWithLinks(new DataWithLinks(data, identityparam), uriInfo, identityparam))
+                        .type("application/json")
+                        .build());
+    }
+
+    @Timed
+    @Path("resources/{zone}")
+    @POST
+    @Produces(UTF8JSON)
+    @Consumes(UTF8JSON)
+    @Operation(
+            summary = Documentation.CREATE_ALL_OPERATION,
+            description = Documentation.CREATE_ALL_OPERATION
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "201", description = "Successful operation",
+                    content = @Content(schema = @Schema(implementation = DataResource.class))),
+            @ApiResponse(responseCode = "400", description = "Missing key or value.",
+                    content = @Content(schema = @Schema(implementation = Error.class))),
+            @ApiResponse(responseCode = "500", description = "Arlas Server Error.",
+                    content = @Content(schema = @Schema(implementation = Error.class)))
+    })
+
+    @UnitOfWork
+    public Response createAll(
+            @Context UriInfo uriInfo,
+            @Context HttpHeaders headers,
+
+            @Parameter(name = "zone",
+                    description = Documentation.ZONE,
+                    schema = @Schema(defaultValue = "pref"),
+                    required = true)
+            @PathParam(value = "zone") String zone,
+
+            @Parameter(name = "documents",
+                    description = Documentation.DOCUMENTS,
+                    required = true)
+            @NotNull @Valid List<DataWrite> documents,
+
+            // --------------------------------------------------------
+            // ----------------------- FORM -----------------------
+            // --------------------------------------------------------
+            @Parameter(name = "pretty",
+                    description = Documentation.FORM_PRETTY,
+                    schema = @Schema(defaultValue = "false"))
+            @QueryParam(value = "pretty") Boolean pretty
+    ) throws ArlasException {
+        IdentityParam identityparam = getIdentityParam(headers);
+        for (DataWrite document : documents) {
+            if (document.getKey() == null || document.getValue() == null) {
+                throw new BadRequestException("The key and the value of every document must be set.");
+            }
+        }
         return Response.created(uriInfo.getRequestUriBuilder().build())
-                .entity(halService.dataWithLinks(dataWithLinks, uriInfo, identityparam))
+                .entity(halService.dataListToResource(persistenceService.createAll(zone, identityparam, documents), uriInfo, identityparam))
+                .type("application/json")
+                .build();
+    }
+
+    @Timed
+    @Path("resources")
+    @PUT
+    @Produces(UTF8JSON)
+    @Consumes(UTF8JSON)
+    @Operation(
+            summary = Documentation.UPDATE_ALL_OPERATION,
+            description = Documentation.UPDATE_ALL_OPERATION
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "201", description = "Successful operation",
+                    content = @Content(schema = @Schema(implementation = DataResource.class))),
+            @ApiResponse(responseCode = "400", description = "Missing id, value or last update.",
+                    content = @Content(schema = @Schema(implementation = Error.class))),
+            @ApiResponse(responseCode = "404", description = "Id not found.",
+                    content = @Content(schema = @Schema(implementation = Error.class))),
+            @ApiResponse(responseCode = "409", description = "A document was updated since its last update.",
+                    content = @Content(schema = @Schema(implementation = Error.class))),
+            @ApiResponse(responseCode = "500", description = "Arlas Server Error.",
+                    content = @Content(schema = @Schema(implementation = Error.class)))
+    })
+
+    @UnitOfWork
+    public Response updateAll(
+            @Context UriInfo uriInfo,
+            @Context HttpHeaders headers,
+
+            @Parameter(name = "documents",
+                    description = Documentation.DOCUMENTS,
+                    required = true)
+            @NotNull @Valid List<DataWrite> documents,
+
+            // --------------------------------------------------------
+            // ----------------------- FORM -----------------------
+            // --------------------------------------------------------
+            @Parameter(name = "pretty",
+                    description = Documentation.FORM_PRETTY,
+                    schema = @Schema(defaultValue = "false"))
+            @QueryParam(value = "pretty") Boolean pretty
+    ) throws ArlasException {
+        IdentityParam identityparam = getIdentityParam(headers);
+        for (DataWrite document : documents) {
+            if (document.getId() == null || document.getValue() == null || document.getLastUpdate() == null) {
+                throw new BadRequestException("The id, the value and the last update of every document must be set.");
+            }
+        }
+        return Response.created(uriInfo.getRequestUriBuilder().build())
+                .entity(halService.dataListToResource(persistenceService.updateAll(identityparam, documents), uriInfo, identityparam))
                 .type("application/json")
                 .build();
     }
@@ -433,7 +593,8 @@ public class PersistenceRestService {
     })
 
     @UnitOfWork
-    public Response deleteById(
+    public void deleteById(
+            @Suspended AsyncResponse asyncResponse,
             @Context HttpHeaders headers,
             @Context UriInfo uriInfo,
             @Parameter(name = "id",
@@ -448,12 +609,46 @@ public class PersistenceRestService {
                     description = Documentation.FORM_PRETTY,
                     schema = @Schema(defaultValue = "false"))
             @QueryParam(value = "pretty") Boolean pretty
-    ) throws ArlasException {
+    ) {
         IdentityParam identityparam = getIdentityParam(headers);
-        DataWithLinks dataWithLinks = new DataWithLinks(persistenceService.deleteById(id, identityparam), identityparam);
-        return Response.accepted().entity(halService.dataWithLinks(dataWithLinks, uriInfo, identityparam))
-                .type("application/json")
-                .build();
+        resume(asyncResponse, persistenceService.deleteByIdAsync(id, identityparam),
+                data -> Response.accepted().entity(halService.dataWithLinks(new DataWithLinks(data, identityparam), uriInfo, identityparam))
+                        .type("application/json")
+                        .build());
+    }
+
+    /**
+     * Resumes the request with the response built from the result of the engine. The engines with a non-blocking
+     * client release the request thread while they wait, their response is then built and written in the executor of
+     * the responses, never in a thread of the client: when its queue is full, the request fails with a 503. The other
+     * ones complete before the resource method returns and are answered in the request thread, within its unit of work.
+     */
+    private <T> void resume(AsyncResponse asyncResponse, CompletableFuture<T> result, Function<T, Response> response) {
+        if (result.isDone()) {
+            answer(asyncResponse, result.thenApply(response));
+            return;
+        }
+        result.whenComplete((r, e) -> {
+            try {
+                responses.execute(() -> answer(asyncResponse, result.thenApply(response)));
+            } catch (RejectedExecutionException rejected) {
+                asyncResponse.resume(new ServiceUnavailableException("Too many responses are waiting to be written, retry later."));
+            }
+        });
+    }
+
+    private static void answer(AsyncResponse asyncResponse, CompletableFuture<Response> response) {
+        response.whenComplete((r, e) -> {
+            if (e == null) {
+                asyncResponse.resume(r);
+            } else {
+                asyncResponse.resume(unwrap(e));
+            }
+        });
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
     }
 
     private IdentityParam getIdentityParam(HttpHeaders headers) {
@@ -0,0 +1,160 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.persistence.rest;
+
+import io.arlas.commons.config.ArlasConfiguration;
+import io.arlas.filter.core.IdentityParam;
+import io.dropwizard.hibernate.HibernateBundle;
+import io.dropwizard.hibernate.UnitOfWork;
+import io.dropwizard.hibernate.UnitOfWorkAspect;
+import org.glassfish.jersey.server.internal.process.MappableException;
+import org.glassfish.jersey.server.model.ResourceMethod;
+import org.glassfish.jersey.server.monitoring.ApplicationEvent;
+import org.glassfish.jersey.server.monitoring.ApplicationEventListener;
+import org.glassfish.jersey.server.monitoring.RequestEvent;
+import org.glassfish.jersey.server.monitoring.RequestEventListener;
+import org.hibernate.SessionFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Opens the units of work of the methods annotated with {@link ReplicaUnitOfWork}, like dropwizard-hibernate does for
+ * {@link UnitOfWork}, choosing the database per request: the replica, unless the user wrote through this server less
+ * than readYourWrites milliseconds ago and could not see its write on a lagging replica yet.
+ */
+public class ReplicaUnitOfWorkListener implements ApplicationEventListener {
+    public static final String REPLICA = "replica";
+    // beyond, the writes older than readYourWrites are forgotten
+    private static final int MAX_RECENT_WRITERS = 10000;
+
+    private final ArlasConfiguration configuration;
+    private final Map<String, SessionFactory> sessionFactories = new HashMap<>();
+    private final boolean withReplica;
+    private final long readYourWrites;
+    private final Map<String, Long> recentWrites = new ConcurrentHashMap<>();
+
+    /**
+     * @param replica null without replica: the read-only units of work then run on the primary database
+     */
+    public ReplicaUnitOfWorkListener(ArlasConfiguration configuration, SessionFactory primary, SessionFactory replica, long readYourWrites) {
+        this.configuration = configuration;
+        this.sessionFactories.put(HibernateBundle.DEFAULT_NAME, primary);
+        this.withReplica = replica != null;
+        if (withReplica) {
+            this.sessionFactories.put(REPLICA, replica);
+        }
+        this.readYourWrites = readYourWrites;
+    }
+
+    @Override
+    public void onEvent(ApplicationEvent event) {
+    }
+
+    @Override
+    public RequestEventListener onRequest(RequestEvent event) {
+        return new ReplicaUnitOfWorkEventListener();
+    }
+
+    private class ReplicaUnitOfWorkEventListener implements RequestEventListener {
+        private final UnitOfWorkAspect unitOfWorkAspect = new UnitOfWorkAspect(sessionFactories);
+        private boolean started = false;
+
+        @Override
+        public void onEvent(RequestEvent event) {
+            switch (event.getType()) {
+                case RESOURCE_METHOD_START -> {
+                    ResourceMethod method = event.getUriInfo().getMatchedResourceMethod();
+                    if (method.getInvocable().getDefinitionMethod().isAnnotationPresent(ReplicaUnitOfWork.class)) {
+                        boolean onReplica = withReplica && !wroteRecently(getUserId(event));
+                        unitOfWorkAspect.beforeStart(onReplica ? REPLICA_UNIT_OF_WORK : PRIMARY_UNIT_OF_WORK);
+                        started = true;
+                    }
+                }
+                case RESP_FILTERS_START -> {
+                    if (started) {
+                        try {
+                            unitOfWorkAspect.afterEnd();
+                        } catch (Exception e) {
+                            throw new MappableException(e);
+                        }
+                    }
+                }
+                case ON_EXCEPTION -> {
+                    if (started) {
+                        unitOfWorkAspect.onError();
+                    }
+                }
+                case FINISHED -> {
+                    if (started) {
+                        unitOfWorkAspect.onFinish();
+                    } else if (withReplica && event.isSuccess() && isWrite(event)) {
+                        recordWrite(getUserId(event));
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+    }
+
+    private String getUserId(RequestEvent event) {
+        return new IdentityParam(configuration, event.getContainerRequest()).userId;
+    }
+
+    private static boolean isWrite(RequestEvent event) {
+        return event.getUriInfo().getMatchedResourceMethod() != null
+                && event.getUriInfo().getMatchedResourceMethod().getInvocable().getDefinitionMethod().isAnnotationPresent(UnitOfWork.class);
+    }
+
+    private void recordWrite(String userId) {
+        long now = System.currentTimeMillis();
+        recentWrites.put(userId, now);
+        if (recentWrites.size() > MAX_RECENT_WRITERS) {
+            recentWrites.values().removeIf(date -> now - date >= readYourWrites);
+        }
+    }
+
+    private boolean wroteRecently(String userId) {
+        Long date = recentWrites.get(userId);
+        return date != null && System.currentTimeMillis() - date < readYourWrites;
+    }
+
+    // the units of work are given to UnitOfWorkAspect as annotations, read from these methods
+    private static final UnitOfWork PRIMARY_UNIT_OF_WORK = getUnitOfWork("onPrimary");
+    private static final UnitOfWork REPLICA_UNIT_OF_WORK = getUnitOfWork("onReplica");
+
+    @UnitOfWork(readOnly = true)
+    private static void onPrimary() {
+    }
+
+    @UnitOfWork(value = REPLICA, readOnly = true)
+    private static void onReplica() {
+    }
+
+    private static UnitOfWork getUnitOfWork(String method) {
+        try {
+            return ReplicaUnitOfWorkListener.class.getDeclaredMethod(method).getAnnotation(UnitOfWork.class);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
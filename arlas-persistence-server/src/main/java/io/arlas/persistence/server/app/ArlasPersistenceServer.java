@@ -19,6 +19,9 @@
 
 package io.arlas.persistence.server.app;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.SerializationFeature;
@@ -36,11 +39,15 @@ import io.arlas.filter.config.TechnicalRoles;
 import io.arlas.filter.core.PolicyEnforcer;
 import io.arlas.filter.impl.KeycloakPolicyEnforcer;
 import io.arlas.persistence.rest.PersistenceRestService;
+import io.arlas.persistence.rest.ReplicaUnitOfWorkListener;
 import io.arlas.persistence.server.core.PersistenceService;
+import io.arlas.persistence.server.impl.FileLogPersistenceServiceImpl;
 import io.arlas.persistence.server.impl.FileSystemPersistenceServiceImpl;
 import io.arlas.persistence.server.impl.GoogleFirestorePersistenceServiceImpl;
 import io.arlas.persistence.server.impl.HibernatePersistenceServiceImpl;
 import io.arlas.persistence.server.model.Data;
+import io.arlas.persistence.server.utils.Durability;
+import io.arlas.persistence.server.utils.FileSystemLayout;
 import io.dropwizard.assets.AssetsBundle;
 import io.dropwizard.configuration.EnvironmentVariableSubstitutor;
 import io.dropwizard.configuration.SubstitutingSourceProvider;
@@ -49,10 +56,14 @@ import io.dropwizard.core.setup.Bootstrap;
 import io.dropwizard.core.setup.Environment;
 import io.dropwizard.db.DataSourceFactory;
 import io.dropwizard.hibernate.HibernateBundle;
+import io.dropwizard.hibernate.SessionFactoryFactory;
+import io.dropwizard.lifecycle.Managed;
 import io.federecio.dropwizard.swagger.SwaggerBundle;
 import io.federecio.dropwizard.swagger.SwaggerBundleConfiguration;
 import org.eclipse.jetty.servlets.CrossOriginFilter;
 import org.glassfish.jersey.media.multipart.MultiPartFeature;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -60,6 +71,10 @@ import jakarta.servlet.DispatcherType;
 import jakarta.servlet.FilterRegistration;
 import jakarta.ws.rs.core.HttpHeaders;
 import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 
 public class ArlasPersistenceServer extends Application<ArlasPersistenceServerConfiguration> {
     Logger LOGGER = LoggerFactory.getLogger(ArlasPersistenceServer.class);
@@ -109,18 +124,53 @@ public class ArlasPersistenceServer extends Application<ArlasPersistenceServerCo
         environment.jersey().register(new JsonProcessingExceptionMapper());
         environment.jersey().register(new ConstraintViolationExceptionMapper());
 
+        // processes the results of the non-blocking engines and writes their responses, stopped with the server; a
+        // result refused by a full queue fails its request instead of being processed in a thread of the client
+        ExecutorService responses = environment.lifecycle().executorService("persistence-response-%d")
+                .minThreads(configuration.asyncResponseThreads)
+                .maxThreads(configuration.asyncResponseThreads)
+                .workQueue(new ArrayBlockingQueue<>(configuration.asyncResponseQueueSize))
+                .rejectionPolicy(new ThreadPoolExecutor.AbortPolicy())
+                .build();
+
         PersistenceService persistenceService = null;
         LOGGER.info("Starting with " + configuration.engine + " persistence engine");
         switch (configuration.engine) {
-            case "hibernate" -> persistenceService = new HibernatePersistenceServiceImpl(hibernate.getSessionFactory());
-            case "firestore" -> persistenceService = new GoogleFirestorePersistenceServiceImpl(configuration.firestoreCollection);
-            case "file" -> persistenceService = new FileSystemPersistenceServiceImpl(configuration.localFolder);
+            case "hibernate" -> {
+                SessionFactory replica = null;
+                if (configuration.databaseReplica != null) {
+                    LOGGER.info("Running the read-only requests on the replica " + configuration.databaseReplica.getUrl());
+                    // a replica is read-only, the schema is managed on the primary database
+                    configuration.databaseReplica.getProperties().put("hibernate.hbm2ddl.auto", "none");
+                    replica = new SessionFactoryFactory().build(hibernate, environment, configuration.databaseReplica,
+                            List.of(Data.class), "hibernate-" + ReplicaUnitOfWorkListener.REPLICA);
+                }
+                persistenceService = new HibernatePersistenceServiceImpl(hibernate.getSessionFactory(), replica,
+                        configuration.hibernateAclArrays, configuration.hibernateValueJsonb,
+                        configuration.hibernateKeyIndexes);
+                environment.jersey().register(new ReplicaUnitOfWorkListener(configuration, hibernate.getSessionFactory(),
+                        replica, configuration.databaseReplicaReadYourWrites.toMilliseconds()));
+                registerHibernateMetrics(environment);
+            }
+            case "firestore" -> persistenceService = new GoogleFirestorePersistenceServiceImpl(configuration.firestoreCollection, responses);
+            case "file" -> persistenceService = new FileSystemPersistenceServiceImpl(configuration.localFolder,
+                    FileSystemLayout.fromString(configuration.localFolderLayout), configuration.localFolderMigrate,
+                    Durability.fromString(configuration.localFolderDurability), configuration.localFolderWatch,
+                    configuration.localFolderReconcileInterval.toMilliseconds(), configuration.localFolderCatalog,
+                    configuration.localFolderReadThreads);
+            case "file-log" -> persistenceService = new FileLogPersistenceServiceImpl(configuration.localFolder,
+                    Durability.fromString(configuration.localFolderDurability), configuration.fileLogSegmentSize.toBytes(),
+                    configuration.fileLogCompactionRatio,
+                    configuration.fileLogCompactionInterval.toMilliseconds());
             default -> {
-                LOGGER.error("Engine not supported: " + configuration.engine + " (valid values are: 'hibernate' or 'firestore' or 'file').");
+                LOGGER.error("Engine not supported: " + configuration.engine + " (valid values are: 'hibernate' or 'firestore' or 'file' or 'file-log').");
                 System.exit(1);
             }
         }
-        environment.jersey().register(new PersistenceRestService(persistenceService, configuration));
+        if (persistenceService instanceof Managed managed) {
+            environment.lifecycle().manage(managed);
+        }
+        environment.jersey().register(new PersistenceRestService(persistenceService, configuration, responses));
 
         CacheFactory cacheFactory = (CacheFactory) Class
                 .forName(configuration.arlasCacheFactoryClass)
@@ -183,4 +233,24 @@ public class ArlasPersistenceServer extends Application<ArlasPersistenceServerCo
         // Add URL mapping
         cors.addMappingForUrlPatterns(EnumSet.allOf(DispatcherType.class), true, "/*");
     }
+
+    /**
+     * Exposes the query plan cache of Hibernate (enabled by hibernate.generate_statistics) with the other metrics.
+     */
+    private void registerHibernateMetrics(Environment environment) {
+        Statistics statistics = hibernate.getSessionFactory().getStatistics();
+        if (statistics.isStatisticsEnabled()) {
+            environment.metrics().register(MetricRegistry.name("hibernate", "query-plan-cache", "hits"),
+                    (Gauge<Long>) statistics::getQueryPlanCacheHitCount);
+            environment.metrics().register(MetricRegistry.name("hibernate", "query-plan-cache", "misses"),
+                    (Gauge<Long>) statistics::getQueryPlanCacheMissCount);
+            environment.metrics().register(MetricRegistry.name("hibernate", "query-plan-cache", "hit-ratio"), new RatioGauge() {
+                @Override
+                protected Ratio getRatio() {
+                    return Ratio.of(statistics.getQueryPlanCacheHitCount(),
+                            statistics.getQueryPlanCacheHitCount() + statistics.getQueryPlanCacheMissCount());
+                }
+            });
+        }
+    }
 }
@@ -0,0 +1,151 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.arlas.persistence.rest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.Matchers.equalTo;
+import org.junit.Assert;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import io.restassured.RestAssured;
+import static io.restassured.RestAssured.given;
+import io.restassured.response.Response;
+import io.restassured.specification.RequestSpecification;
+
+/**
+ * Concurrent updates of documents, in a zone of their own so that they don't interfere with {@link PersistenceIT}.
+ * Their throughput is measured by scripts/benchmarks/update-throughput.sh.
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class ConcurrencyIT {
+
+    protected static String arlasAppPath;
+    private static final String userHeader;
+    private static final String organizationHeader;
+    private static final String groupsHeader;
+
+    private static final UserIdentity technical;
+
+    private static final String ALL = "group/user_pref/arlas_company1/all";
+    private static final String TECHNICAL = "group/user_pref/arlas_company1/technical";
+    private static final String PUBLIC = "group/public";
+
+    private static final String dataZone = "user_pref_concurrency";
+    private static final int CONCURRENT_WRITERS = 16;
+
+    static {
+        technical = new UserIdentity("technical", String.join(",", ALL, TECHNICAL, PUBLIC), "company1");
+
+        userHeader = Optional.ofNullable(System.getenv("ARLAS_USER_HEADER")).orElse("arlas-user");
+        organizationHeader = Optional.ofNullable(System.getenv("ARLAS_ORGANIZATION_HEADER")).orElse("arlas-organization");
+        groupsHeader = Optional.ofNullable(System.getenv("ARLAS_GROUPS_HEADER")).orElse("arlas-groups");
+        String arlasHost = Optional.ofNullable(System.getenv("ARLAS_PERSISTENCE_HOST")).orElse("localhost");
+        int arlasPort = Integer.parseInt(Optional.ofNullable(System.getenv("ARLAS_PERSISTENCE_PORT")).orElse("9997"));
+        RestAssured.baseURI = "http://" + arlasHost;
+        RestAssured.port = arlasPort;
+        RestAssured.basePath = "";
+        String arlasPrefix = Optional.ofNullable(System.getenv("ARLAS_PERSISTENCE_PREFIX")).orElse("/arlas_persistence_server");
+        arlasAppPath = Optional.ofNullable(System.getenv("ARLAS_PERSISTENCE_APP_PATH")).orElse("/");
+        if (arlasAppPath.endsWith("/")) {
+            arlasAppPath = arlasAppPath.substring(0, arlasAppPath.length() - 1);
+        }
+        arlasAppPath = arlasAppPath + arlasPrefix;
+        if (arlasAppPath.endsWith("//")) {
+            arlasAppPath = arlasAppPath.substring(0, arlasAppPath.length() - 1);
+        }
+        if (!arlasAppPath.endsWith("/")) {
+            arlasAppPath = arlasAppPath + "/persist/";
+        }
+    }
+
+    @Test
+    public void test01ConcurrentUpdatesOfSameDocument() throws Exception {
+        Response created = createData(technical, "contendedDocument");
+        String id = created.then().statusCode(201).extract().jsonPath().get("id");
+        Long lastUpdate = created.then().extract().jsonPath().get("last_update_date");
+
+        ExecutorService executor = Executors.newFixedThreadPool(CONCURRENT_WRITERS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> statuses = new ArrayList<>();
+        for (int i = 0; i < CONCURRENT_WRITERS; i++) {
+            int value = i;
+            statuses.add(executor.submit(() -> {
+                start.await();
+                return updateData(technical, id, value, lastUpdate).statusCode();
+            }));
+        }
+        start.countDown();
+        int updated = 0;
+        int conflicts = 0;
+        for (Future<Integer> status : statuses) {
+            switch (status.get()) {
+                case 201 -> updated++;
+                case 409 -> conflicts++;
+                default -> Assert.fail("Unexpected status " + status.get());
+            }
+        }
+        executor.shutdown();
+
+        Assert.assertEquals(1, updated);
+        Assert.assertEquals(CONCURRENT_WRITERS - 1, conflicts);
+        deleteData(technical, id);
+    }
+
+    protected RequestSpecification givenForUser(UserIdentity userIdentity) {
+        return given().header(userHeader, userIdentity.userId)
+                .header(groupsHeader, userIdentity.groups)
+                .header(organizationHeader, userIdentity.organization);
+    }
+
+    protected Response createData(UserIdentity userIdentity, String key) {
+        return givenForUser(userIdentity)
+                .pathParam("zone", dataZone)
+                .pathParam("key", key)
+                .contentType("application/json")
+                .body(Map.of("age", 0))
+                .post(arlasAppPath.concat("resource/{zone}/{key}"));
+    }
+
+    protected Response updateData(UserIdentity userIdentity, String id, Integer value, Long lastUpdate) {
+        return givenForUser(userIdentity)
+                .contentType("application/json")
+                .body(Map.of("age", value))
+                .param("last_update", lastUpdate)
+                .put(arlasAppPath.concat("resource/id/") + id);
+    }
+
+    protected void deleteData(UserIdentity userIdentity, String id) {
+        givenForUser(userIdentity)
+                .contentType("application/json")
+                .delete(arlasAppPath.concat("resource/id/") + id)
+                .then().statusCode(202)
+                .body("id", equalTo(id));
+    }
+}
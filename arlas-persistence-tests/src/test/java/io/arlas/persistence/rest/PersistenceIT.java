@@ -22,11 +22,14 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
 import org.junit.Assert;
 import org.junit.FixMethodOrder;
 import org.junit.Test;
@@ -35,6 +38,7 @@ import org.junit.runners.MethodSorters;
 import io.restassured.RestAssured;
 import static io.restassured.RestAssured.given;
 import io.restassured.http.ContentType;
+import io.restassured.path.json.JsonPath;
 import io.restassured.response.Response;
 import io.restassured.specification.RequestSpecification;
 
@@ -219,6 +223,103 @@ public class PersistenceIT {
                 .contentType(ContentType.JSON)
                 .body("count", equalTo(1))
                 .body("total", equalTo(1));
+
+        givenForUser(technical)
+                .pathParam("zone", dataZone)
+                .param("order", "asc")
+                .param("size", "10")
+                .param("page", "1")
+                .param("key", "DocuMent")
+                .param("key_match", "prefix")
+                .when()
+                .get(arlasAppPath.concat("resources/{zone}"))
+                .then().statusCode(200)
+                .contentType(ContentType.JSON)
+                .body("count", equalTo(7))
+                .body("total", equalTo(7));
+
+        givenForUser(technical)
+                .pathParam("zone", dataZone)
+                .param("order", "asc")
+                .param("size", "10")
+                .param("page", "1")
+                .param("key", "ment6")
+                .param("key_match", "prefix")
+                .when()
+                .get(arlasAppPath.concat("resources/{zone}"))
+                .then().statusCode(200)
+                .contentType(ContentType.JSON)
+                .body("count", equalTo(0))
+                .body("total", equalTo(0));
+
+        givenForUser(technical)
+                .pathParam("zone", dataZone)
+                .param("order", "asc")
+                .param("size", "2")
+                .param("page", "1")
+                .param("total", "none")
+                .when()
+                .get(arlasAppPath.concat("resources/{zone}"))
+                .then().statusCode(200)
+                .contentType(ContentType.JSON)
+                .body("count", equalTo(2))
+                .body("total", nullValue())
+                .body("_links.next", notNullValue())
+                .body("_links.last", nullValue());
+
+        givenForUser(technical)
+                .pathParam("zone", dataZone)
+                .param("size", "2")
+                .param("page", "4")
+                .param("total", "estimate")
+                .when()
+                .get(arlasAppPath.concat("resources/{zone}"))
+                .then().statusCode(200)
+                .contentType(ContentType.JSON)
+                .body("count", equalTo(1))
+                .body("total", notNullValue());
+
+        givenForUser(technical)
+                .pathParam("zone", dataZone)
+                .param("order", "asc")
+                .param("size", "10")
+                .param("page", "1")
+                .param("with_value", "false")
+                .when()
+                .get(arlasAppPath.concat("resources/{zone}"))
+                .then().statusCode(200)
+                .contentType(ContentType.JSON)
+                .body("count", equalTo(7))
+                .body("data[0].doc_key", notNullValue())
+                .body("data[0].doc_value", nullValue());
+
+        List<String> pages = new ArrayList<>();
+        String cursor = "*";
+        while (cursor != null) {
+            JsonPath page = givenForUser(technical)
+                    .pathParam("zone", dataZone)
+                    .param("order", "asc")
+                    .param("size", "3")
+                    .param("cursor", cursor)
+                    .when()
+                    .get(arlasAppPath.concat("resources/{zone}"))
+                    .then().statusCode(200)
+                    .contentType(ContentType.JSON)
+                    .body("total", equalTo(7))
+                    .extract().jsonPath();
+            pages.addAll(page.getList("data.id"));
+            String next = page.getString("_links.next.href");
+            cursor = next == null ? null : next.replaceAll(".*[?&]cursor=([^&]*).*", "$1");
+        }
+        Assert.assertEquals(idBis.size(), pages.size());
+        Assert.assertEquals(new HashSet<>(idBis), new HashSet<>(pages));
+
+        givenForUser(technical)
+                .pathParam("zone", dataZone)
+                .param("cursor", "not a cursor")
+                .when()
+                .get(arlasAppPath.concat("resources/{zone}"))
+                .then().statusCode(400);
     }
 
     @Test
@@ -545,6 +646,79 @@ public class PersistenceIT {
         getDataAsAnonymous(id2).then().statusCode(403);
     }
 
+    @Test
+    public void test25BulkCreateAndUpdate() {
+        List<Map<String, Object>> documents = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            documents.add(Map.of("key", "bulkDocument" + i, "readers", List.of(ALL), "value", generateData(i)));
+        }
+        JsonPath created = givenForUser(technical)
+                .pathParam("zone", dataZone)
+                .contentType("application/json")
+                .body(documents)
+                .post(arlasAppPath.concat("resources/{zone}"))
+                .then().statusCode(201)
+                .body("count", equalTo(3))
+                .body("data[1].doc_key", equalTo("bulkDocument1"))
+                .body("data[1].doc_value", equalTo("{\"age\":1}"))
+                .extract().jsonPath();
+        List<String> ids = created.getList("data.id");
+        List<Long> lastUpdates = created.getList("data.last_update_date", Long.class);
+        getData(commercial, ids.get(2)).then().statusCode(200);
+
+        List<Map<String, Object>> updates = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            updates.add(Map.of("id", ids.get(i), "last_update", lastUpdates.get(i), "value", generateData(10 + i)));
+        }
+        givenForUser(technical)
+                .contentType("application/json")
+                .body(updates)
+                .put(arlasAppPath.concat("resources"))
+                .then().statusCode(201)
+                .body("count", equalTo(3))
+                .body("data[2].doc_value", equalTo("{\"age\":12}"))
+                .body("data[2].doc_readers", equalTo(Collections.EMPTY_LIST));
+        getData(commercial, ids.get(2)).then().statusCode(403);
+
+        // the versions sent are now outdated
+        givenForUser(technical)
+                .contentType("application/json")
+                .body(updates)
+                .put(arlasAppPath.concat("resources"))
+                .then().statusCode(409);
+        getData(technical, ids.get(0)).then().statusCode(200)
+                .body("doc_value", equalTo("{\"age\":10}"));
+
+        givenForUser(technical)
+                .contentType("application/json")
+                .body(List.of(Map.of("id", ids.get(0), "value", generateData(20))))
+                .put(arlasAppPath.concat("resources"))
+                .then().statusCode(400);
+
+        ids.forEach(id -> deleteData(technical, id));
+    }
+
+    @Test
+    public void test26DeleteWithoutOrganisation() {
+        String id1 = createData(technical, "myOrgaDocument", List.of(ALL), List.of(TECHNICAL))
+                .then().statusCode(201)
+                .extract().jsonPath().get("id");
+
+        // a user without organisation writes nothing, the document exists
+        given().header(userHeader, technical.userId)
+                .header(groupsHeader, technical.groups)
+                .contentType("application/json")
+                .delete(arlasAppPath.concat("resource/id/") + id1)
+                .then().statusCode(403);
+        given().header(userHeader, technical.userId)
+                .header(groupsHeader, technical.groups)
+                .contentType("application/json")
+                .delete(arlasAppPath.concat("resource/id/") + id1 + "-missing")
+                .then().statusCode(404);
+
+        deleteData(technical, id1);
+    }
+
     protected RequestSpecification givenForUser(UserIdentity userIdentity) {
         return given().header(userHeader, userIdentity.userId)
                 .header(groupsHeader, userIdentity.groups)
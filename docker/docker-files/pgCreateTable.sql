@@ -7,9 +7,15 @@ CREATE TABLE user_data (
     docOrganization VARCHAR(255) NOT NULL,
     id VARCHAR(255) PRIMARY KEY,
     lastUpdateDate TIMESTAMP,
-    docValue JSON
+    docValue JSON,
+    docEntities TEXT[]
 );
 CREATE INDEX doc_key_idx_orga ON user_data (docKey, docZone,docOrganization);
+CREATE INDEX doc_zone_idx_last_update ON user_data (docZone, lastUpdateDate, id);
+CREATE INDEX doc_entities_idx ON user_data USING GIN (docEntities);
+CREATE INDEX doc_key_prefix_idx ON user_data (docZone, lower(docKey) text_pattern_ops);
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE INDEX doc_key_trgm_idx ON user_data USING GIN (docKey gin_trgm_ops);
 
 DROP TABLE IF EXISTS user_data_readers;
 
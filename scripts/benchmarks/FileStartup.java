@@ -0,0 +1,59 @@
+/*
+ * Licensed to Gisaïa under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Gisaïa licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import io.arlas.filter.core.IdentityParam;
+import io.arlas.persistence.server.impl.FileSystemPersistenceServiceImpl;
+import io.arlas.persistence.server.utils.Durability;
+import io.arlas.persistence.server.utils.FileSystemLayout;
+
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Fills a folder with documents through the file engine, or measures how long the engine takes to index them at
+ * startup, reading its catalog or every document. Run by file-startup.sh, each startup in a fresh JVM.
+ *   FileStartup fill FOLDER DOCUMENTS
+ *   FileStartup start FOLDER catalog|scan
+ */
+public class FileStartup {
+
+    public static void main(String[] args) throws Exception {
+        String folder = args[1];
+        if ("fill".equals(args[0])) {
+            int documents = Integer.parseInt(args[2]);
+            IdentityParam user = new IdentityParam("bench", List.of("org"), List.of("group/org"), false);
+            FileSystemPersistenceServiceImpl service = open(folder, true);
+            for (int i = 0; i < documents; i++) {
+                service.create("zone-" + (i % 10), "key-" + i, user, new HashSet<>(), new HashSet<>(), "{\"value\":" + i + "}");
+            }
+            // writes the snapshot of the catalog
+            service.stop();
+        } else {
+            long start = System.nanoTime();
+            FileSystemPersistenceServiceImpl service = open(folder, "catalog".equals(args[2]));
+            System.out.printf("%d ms%n", (System.nanoTime() - start) / 1_000_000);
+            service.stop();
+        }
+    }
+
+    private static FileSystemPersistenceServiceImpl open(String folder, boolean useCatalog) throws Exception {
+        return new FileSystemPersistenceServiceImpl(folder, FileSystemLayout.FLAT, false, Durability.NONE, false, 0, useCatalog,
+                FileSystemPersistenceServiceImpl.DEFAULT_READ_THREADS);
+    }
+}
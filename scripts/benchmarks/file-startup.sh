@@ -0,0 +1,37 @@
+#!/bin/bash
+# Compares the startup of the file engine with and without its catalog, on a throwaway folder filled with DOCUMENTS
+# documents. Each startup is measured RUNS times, the page cache being warm in both cases.
+#   ./scripts/benchmarks/file-startup.sh [DOCUMENTS] [RUNS]
+set -e
+
+DOCUMENTS=${1:-100000}
+RUNS=${2:-3}
+SCRIPT_DIRECTORY="$(cd "$(dirname "${BASH_SOURCE[0]}")" >/dev/null 2>&1 && pwd)"
+PROJECT_ROOT_DIRECTORY=$(dirname $(dirname "$SCRIPT_DIRECTORY"))
+FOLDER=$(mktemp -d)
+
+function clean_exit {
+    ARG=$?
+    rm -rf "${FOLDER}"
+    exit $ARG
+}
+trap clean_exit EXIT
+
+cd "${PROJECT_ROOT_DIRECTORY}"
+echo "===> build arlas-persistence-core"
+mvn -B -q -pl arlas-persistence-core -am install -DskipTests
+mvn -B -q -pl arlas-persistence-core dependency:build-classpath -Dmdep.outputFile="${FOLDER}/classpath.txt"
+CLASSPATH="arlas-persistence-core/target/classes:$(cat "${FOLDER}/classpath.txt")"
+
+function startup {
+    java -cp "${CLASSPATH}" "${SCRIPT_DIRECTORY}/FileStartup.java" "$@" 2>/dev/null
+}
+
+echo "===> create ${DOCUMENTS} documents"
+startup fill "${FOLDER}/documents" ${DOCUMENTS}
+
+echo "===> startup reading every document"
+for RUN in $(seq ${RUNS}); do startup start "${FOLDER}/documents" scan; done
+
+echo "===> startup reading the catalog"
+for RUN in $(seq ${RUNS}); do startup start "${FOLDER}/documents" catalog; done
@@ -0,0 +1,78 @@
+#!/bin/bash
+# Compares the key searches of the hibernate engine with and without the doc_key_prefix_idx and doc_key_trgm_idx
+# indexes, on a throwaway PostgreSQL container filled with ROWS documents.
+#   ./scripts/benchmarks/key-search.sh [ROWS]
+set -e
+
+ROWS=${1:-1000000}
+CONTAINER=arlas-persistence-key-search-bench
+POSTGRES_IMAGE=${POSTGRES_IMAGE:-postgres:16.3}
+
+function clean_exit {
+    ARG=$?
+    docker rm -f ${CONTAINER} > /dev/null 2>&1 || true
+    exit $ARG
+}
+trap clean_exit EXIT
+
+function psql_exec {
+    docker exec -i ${CONTAINER} psql -q -v ON_ERROR_STOP=1 -U postgres -d postgres "$@"
+}
+
+# Execution time of the request, as measured by PostgreSQL, and the access path it used
+function explain {
+    echo "--- $1"
+    psql_exec -At -c "explain (analyze, format text) $2" | grep -E "Index|Seq Scan|Execution Time"
+}
+
+function run_searches {
+    explain "contains 'pref-77'" \
+        "select id from user_data where docZone = 'zone-3' and docKey ilike '%pref-77%' order by lastUpdateDate desc limit 10"
+    explain "contains 'pref-77' (count)" \
+        "select count(*) from user_data where docZone = 'zone-3' and docKey ilike '%pref-77%'"
+    explain "prefix 'map-12'" \
+        "select id from user_data where docZone = 'zone-3' and lower(docKey) like 'map-12%' order by lastUpdateDate desc limit 10"
+    explain "prefix 'map-12' (count)" \
+        "select count(*) from user_data where docZone = 'zone-3' and lower(docKey) like 'map-12%'"
+}
+
+echo "===> start ${POSTGRES_IMAGE}"
+docker run -d --name ${CONTAINER} -e POSTGRES_PASSWORD=bench ${POSTGRES_IMAGE} > /dev/null
+until docker exec ${CONTAINER} pg_isready -U postgres > /dev/null 2>&1; do sleep 1; done
+sleep 2
+
+echo "===> load ${ROWS} documents"
+psql_exec <<SQL
+CREATE TABLE user_data (
+    docKey VARCHAR(255) NOT NULL,
+    docZone VARCHAR(255) NOT NULL,
+    docOwner VARCHAR(255) NOT NULL,
+    docOrganization VARCHAR(255) NOT NULL,
+    id VARCHAR(255) PRIMARY KEY,
+    lastUpdateDate TIMESTAMP,
+    docValue JSON
+);
+INSERT INTO user_data
+SELECT (ARRAY['pref', 'map', 'Dashboard', 'view'])[1 + i % 4] || '-' || (i % 1000) || '-' || md5(i::text),
+       'zone-' || (i % 10), 'user-' || (i % 500), 'org-' || (i % 20), md5('id' || i),
+       now() - (i || ' seconds')::interval, '{"value": ' || i || '}'
+FROM generate_series(1, ${ROWS}) AS i;
+CREATE INDEX doc_key_idx_orga ON user_data (docKey, docZone, docOrganization);
+CREATE INDEX doc_zone_idx_last_update ON user_data (docZone, lastUpdateDate, id);
+ANALYZE user_data;
+SQL
+
+echo "===> without the key indexes"
+run_searches
+
+echo "===> create the key indexes"
+psql_exec <<SQL
+\timing on
+CREATE INDEX doc_key_prefix_idx ON user_data (docZone, lower(docKey) text_pattern_ops);
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE INDEX doc_key_trgm_idx ON user_data USING GIN (docKey gin_trgm_ops);
+ANALYZE user_data;
+SQL
+
+echo "===> with the key indexes"
+run_searches
@@ -0,0 +1,46 @@
+#!/bin/bash
+# Measures the updates per second of a running server, with 1 to MAX_THREADS concurrent writers each updating its own
+# document UPDATES times. The documents are created in a zone of their own and deleted afterwards.
+#   ./scripts/benchmarks/update-throughput.sh [MAX_THREADS] [UPDATES]
+set -e
+
+MAX_THREADS=${1:-16}
+UPDATES=${2:-50}
+ARLAS_PERSISTENCE_URL=${ARLAS_PERSISTENCE_URL:-http://localhost:9997/arlas_persistence_server/persist}
+ZONE=user_pref_throughput
+HEADERS=(-H "arlas-user: technical" -H "arlas-organization: company1"
+         -H "arlas-groups: group/user_pref/arlas_company1/all,group/user_pref/arlas_company1/technical"
+         -H "Content-Type: application/json")
+
+function field {
+    sed -E "s/.*\"$1\":\"?([^\",}]*).*/\1/"
+}
+
+# Updates a document UPDATES times, each update carrying the version returned by the previous one
+function writer {
+    local id=$1
+    local last_update
+    last_update=$(curl -sf "${HEADERS[@]}" "${ARLAS_PERSISTENCE_URL}/resource/id/${id}" | field last_update_date)
+    for update in $(seq 1 "${UPDATES}"); do
+        last_update=$(curl -sf "${HEADERS[@]}" -X PUT -d "{\"age\":${update}}" \
+            "${ARLAS_PERSISTENCE_URL}/resource/id/${id}?last_update=${last_update}" | field last_update_date)
+    done
+}
+
+for (( threads = 1; threads <= MAX_THREADS; threads *= 2 )); do
+    ids=()
+    for i in $(seq 1 "${threads}"); do
+        ids+=("$(curl -sf "${HEADERS[@]}" -X POST -d '{"age":0}' \
+            "${ARLAS_PERSISTENCE_URL}/resource/${ZONE}/throughputDocument${i}" | field id)")
+    done
+    start=$(date +%s.%N)
+    for id in "${ids[@]}"; do
+        writer "${id}" &
+    done
+    wait
+    end=$(date +%s.%N)
+    echo "${threads} threads updating their own document: $(echo "${threads} * ${UPDATES} / (${end} - ${start})" | bc) updates/s"
+    for id in "${ids[@]}"; do
+        curl -sf "${HEADERS[@]}" -X DELETE "${ARLAS_PERSISTENCE_URL}/resource/id/${id}" > /dev/null
+    done
+done
@@ -73,7 +73,7 @@ function test_rest_server() {
         -e ARLAS_PERSISTENCE_ENGINE=${ARLAS_PERSISTENCE_ENGINE} \
         --network arlaspersist_default \
         maven:3.8.5-openjdk-17 \
-        mvn -Dit.test=PersistenceIT verify -DskipTests=false -DfailIfNoTests=false
+        mvn -Dit.test=${IT_TESTS:-PersistenceIT} verify -DskipTests=false -DfailIfNoTests=false
 }
 
 
@@ -86,7 +86,11 @@ then
   echo "$DOCKER_PASSWORD" | docker login -u "$DOCKER_USERNAME" --password-stdin
 fi
 
-if [ "$STAGE" == "REST_FILE" ]; then export ARLAS_PERSISTENCE_ENGINE="file"; test_rest_server; fi
-if [ "$STAGE" == "REST_HIBERNATE" ]; then export ARLAS_PERSISTENCE_ENGINE="hibernate"; test_rest_server; fi
+if [ "$STAGE" == "REST_FILE" ]; then export ARLAS_PERSISTENCE_ENGINE="file"; export IT_TESTS="PersistenceIT,ConcurrencyIT"; test_rest_server; fi
+if [ "$STAGE" == "REST_FILE_LOG" ]; then export ARLAS_PERSISTENCE_ENGINE="file-log"; export IT_TESTS="PersistenceIT,ConcurrencyIT"; test_rest_server; fi
+if [ "$STAGE" == "REST_HIBERNATE" ]; then export ARLAS_PERSISTENCE_ENGINE="hibernate"; export IT_TESTS="PersistenceIT,ConcurrencyIT"; test_rest_server; fi
+if [ "$STAGE" == "REST_HIBERNATE_ACL_ARRAYS" ]; then export ARLAS_PERSISTENCE_ENGINE="hibernate"; export ARLAS_PERSISTENCE_HIBERNATE_ACL_ARRAYS=true; export IT_TESTS="PersistenceIT,ConcurrencyIT"; test_rest_server; fi
+# schema of the releases without docEntities, that the server must migrate with hibernate_acl_arrays off
+if [ "$STAGE" == "REST_HIBERNATE_BASELINE_SCHEMA" ]; then export ARLAS_PERSISTENCE_ENGINE="hibernate"; export ARLAS_PERSISTENCE_HIBERNATE_ACL_ARRAYS=false; export ARLAS_PERSISTENCE_CREATESQL_FILE=./pgCreateTableBaseline.sql; export IT_TESTS="PersistenceIT,ConcurrencyIT"; test_rest_server; fi
 if [ "$STAGE" == "DOC" ]; then test_doc; fi
 
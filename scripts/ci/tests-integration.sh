@@ -19,4 +19,7 @@ cd ${SCRIPT_PATH}/../..
 
 # TESTS SUITE
 ./scripts/ci/tests-integration-stage.sh --stage="REST_FILE"
+./scripts/ci/tests-integration-stage.sh --stage="REST_FILE_LOG"
 ./scripts/ci/tests-integration-stage.sh --stage="REST_HIBERNATE"
+./scripts/ci/tests-integration-stage.sh --stage="REST_HIBERNATE_ACL_ARRAYS"
+./scripts/ci/tests-integration-stage.sh --stage="REST_HIBERNATE_BASELINE_SCHEMA"